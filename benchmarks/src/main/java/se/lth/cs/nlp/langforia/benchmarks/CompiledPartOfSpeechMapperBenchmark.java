@@ -0,0 +1,94 @@
+package se.lth.cs.nlp.langforia.benchmarks;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import se.lth.cs.nlp.langforia.common.CompiledPartOfSpeechMapper;
+import se.lth.cs.nlp.langforia.common.PartOfSpeechMapperHashMapBacked;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coarse tag lookups of {@link CompiledPartOfSpeechMapper}, per token and in bulk, compared to the
+ * {@link PartOfSpeechMapperHashMapBacked} it compiles. Fresh tags are new String instances per token as read
+ * from a stored document, shared tags are the same instances as set by most taggers.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar CompiledPartOfSpeechMapperBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledPartOfSpeechMapperBenchmark {
+
+    private static final String[] FINE = {"NN", "NNS", "NNP", "VB", "VBD", "VBZ", "JJ", "RB", "DT", "IN", "CC", ".", ","};
+    private static final String[] COARSE = {"NOUN", "NOUN", "PROPN", "VERB", "VERB", "VERB", "ADJ", "ADV", "DET", "ADP", "CONJ", ".", "."};
+
+    @Param({"fresh", "shared"})
+    public String tags;
+
+    /** Number of tokens */
+    @Param({"10000"})
+    public int tokens;
+
+    private PartOfSpeechMapperHashMapBacked hashMap;
+    private CompiledPartOfSpeechMapper compiled;
+    private String[] fine;
+    private String[] coarse;
+
+    @Setup
+    public void setup() {
+        hashMap = new PartOfSpeechMapperHashMapBacked();
+        for (int i = 0; i < FINE.length; i++) {
+            hashMap.putFromLanguage(FINE[i], COARSE[i]);
+        }
+        compiled = CompiledPartOfSpeechMapper.compile(hashMap);
+
+        Random random = new Random(7);
+        fine = new String[tokens];
+        coarse = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            String tag = FINE[random.nextInt(FINE.length)];
+            fine[i] = tags.equals("fresh") ? new String(tag) : tag;
+        }
+    }
+
+    @Benchmark
+    public void hashMap(Blackhole blackhole) {
+        for (String tag : fine) {
+            blackhole.consume(hashMap.fromLanguage(tag));
+        }
+    }
+
+    @Benchmark
+    public void compiled(Blackhole blackhole) {
+        for (String tag : fine) {
+            blackhole.consume(compiled.fromLanguage(tag));
+        }
+    }
+
+    @Benchmark
+    public String[] compiledBulk() {
+        compiled.fromLanguage(fine, coarse);
+        return coarse;
+    }
+}
@@ -0,0 +1,81 @@
+package se.lth.cs.nlp.langforia.benchmarks;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.openjdk.jmh.annotations.*;
+import se.lth.cs.nlp.langforia.common.RegexSentenceSplitter;
+import se.lth.cs.nlp.langforia.common.SentenceScanner;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * Sentence splitting with {@link SentenceScanner} compared to the {@link RegexSentenceSplitter#PATTERN} it
+ * replaces, on ordinary prose and on text full of unclosed quotes and parentheses where the regex goes quadratic.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar SentenceScannerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SentenceScannerBenchmark {
+
+    private static final String PROSE = "He said \"Stop. Now.\" and left. Then (see fig. 3. below) it ended. "
+                                        + "«Vem är du? Jag vet inte.» Sedan gick hon.\n";
+
+    private static final String UNBALANCED = "(\" a. b ";
+
+    @Param({"prose", "unbalanced"})
+    public String kind;
+
+    /** Number of characters in the text */
+    @Param({"40000"})
+    public int length;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        String unit = kind.equals("unbalanced") ? UNBALANCED : PROSE;
+        StringBuilder sb = new StringBuilder();
+        while(sb.length() < length) {
+            sb.append(unit);
+        }
+        text = sb.toString();
+    }
+
+    @Benchmark
+    public int regex() {
+        Matcher matcher = RegexSentenceSplitter.PATTERN.matcher(text);
+        int count = 0;
+        while(matcher.find()) {
+            if(matcher.group(3) == null && matcher.group(4) == null)
+                count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int scanner() {
+        int[] count = new int[1];
+        SentenceScanner.split(text, (s, e) -> count[0]++);
+        return count[0];
+    }
+}
@@ -0,0 +1,83 @@
+package se.lth.cs.nlp.langforia.benchmarks;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.openjdk.jmh.annotations.*;
+import se.lth.cs.nlp.langforia.common.RegexTokenizer;
+import se.lth.cs.nlp.langforia.common.TokenScanner;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * Tokenizing mixed text with {@link TokenScanner} compared to the {@link RegexTokenizer#PATTERN} it replaces.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar TokenScannerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenScannerBenchmark {
+
+    static final String[] SAMPLES = {
+            "Hello, world!",
+            "The U.S.A. and the E.U. signed it.",
+            "NATO, UN and EU.BE are acronyms; A.b and A. B are not.",
+            "Population: 146 544 710 (2016), area 17,125,191.5 km² or 1.234.567,89 or 12,34 or 1,2345.",
+            "-5 +7 + - -x +x 3-4 4.5.6 1,000,000.25 ,5 .5 5. 5,",
+            "Росси́я (от греч. Ρωσία — Русь), аббревиатура РФ.",
+            "«Citat» och „Zitat“ – 'quotes' \"quotes\" ...",
+            "Tabs\tand no-break spaces and\u0085next line",
+    };
+
+    /** Number of characters in the text */
+    @Param({"1000000"})
+    public int length;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        while(sb.length() < length) {
+            for (String sample : SAMPLES) {
+                sb.append(sample).append('\n');
+            }
+        }
+        text = sb.toString();
+    }
+
+    @Benchmark
+    public int regex() {
+        Matcher matcher = RegexTokenizer.PATTERN.matcher(text);
+        int count = 0;
+        while(matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int scanner() {
+        int[] count = new int[1];
+        TokenScanner.scan(text, 0, text.length(), (s, e) -> count[0]++);
+        return count[0];
+    }
+}
@@ -0,0 +1,74 @@
+package se.lth.cs.nlp.langforia.benchmarks;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import org.openjdk.jmh.annotations.*;
+import se.lth.cs.nlp.langforia.common.TokenizationRebuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Alignment of tokenizer output with {@link TokenizationRebuilder}: a clean tokenization, one where every
+ * other token is absent from the text and one where nine of ten tokens are absent, which forces resyncs.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar TokenizationRebuilderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizationRebuilderBenchmark {
+
+    @Param({"clean", "adversarial", "absent"})
+    public String kind;
+
+    /** Number of words in the text */
+    @Param({"100000"})
+    public int words;
+
+    private String text;
+    private String[] tokens;
+
+    @Setup
+    public void setup() {
+        int absent = kind.equals("clean") ? 0 : kind.equals("adversarial") ? 1 : 9;
+        StringBuilder sb = new StringBuilder();
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < words; i++) {
+            String word = "w" + (i % 997);
+            sb.append(word).append(i % 10 == 9 ? ". " : " ");
+            tokens.add(word);
+            for (int k = 0; k < absent; k++) {
+                tokens.add("wx" + k);
+            }
+            if(i % 10 == 9)
+                tokens.add(".");
+        }
+        this.text = sb.toString();
+        this.tokens = tokens.toArray(new String[tokens.size()]);
+    }
+
+    @Benchmark
+    public int align() {
+        return TokenizationRebuilder.align(text, tokens).missing();
+    }
+}
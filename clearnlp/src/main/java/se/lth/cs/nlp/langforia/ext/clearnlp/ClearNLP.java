@@ -29,18 +29,18 @@ import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import se.lth.cs.docforia.Document;
 import se.lth.cs.docforia.graph.TokenProperties;
 import se.lth.cs.docforia.graph.text.*;
-import se.lth.cs.docforia.query.NodeTVar;
-import se.lth.cs.docforia.query.PropositionGroup;
-import se.lth.cs.docforia.query.QueryCollectors;
 import se.lth.cs.nlp.langforia.kernel.structure.DependencyGrammarParser;
+import se.lth.cs.nlp.langforia.kernel.structure.ModelIdentity;
 import se.lth.cs.nlp.langforia.kernel.structure.PartOfSpeechTagger;
 import se.lth.cs.nlp.langforia.kernel.structure.SemanticRoleLabeller;
+import se.lth.cs.nlp.langforia.kernel.structure.SentenceTokenIndex;
 
 import java.util.List;
 import java.util.stream.Collectors;
 
-public class ClearNLP implements PartOfSpeechTagger, DependencyGrammarParser, SemanticRoleLabeller {
+public class ClearNLP implements PartOfSpeechTagger, DependencyGrammarParser, SemanticRoleLabeller, ModelIdentity {
 
+    private static final String MODEL_TYPE = "general-en";
     private static final AbstractComponent[] pipeline = setupComponents();
 
     private static AbstractComponent[] setupComponents() {
@@ -48,7 +48,7 @@ public class ClearNLP implements PartOfSpeechTagger, DependencyGrammarParser, Se
 
         try {
             String language = AbstractReader.LANG_EN;
-            String modelType = "general-en";
+            String modelType = MODEL_TYPE;
 
             AbstractComponent tagger = NLPGetter.getComponent(modelType, language, NLPMode.MODE_POS);
             AbstractComponent morphological = NLPGetter.getComponent(modelType, language, NLPMode.MODE_MORPH);
@@ -69,6 +69,11 @@ public class ClearNLP implements PartOfSpeechTagger, DependencyGrammarParser, Se
 
     }
 
+    @Override
+    public String modelId() {
+        return MODEL_TYPE;
+    }
+
     @Override
     public void apply(Document doc) {
         Object2IntOpenHashMap<String> counts = new Object2IntOpenHashMap<>();
@@ -77,11 +82,10 @@ public class ClearNLP implements PartOfSpeechTagger, DependencyGrammarParser, Se
         int parseErrorAcc = 0;
         int parsePredicateAcc = 0;
 
-        NodeTVar<Sentence> S = Sentence.var();
-        NodeTVar<Token> T = Token.var();
-        for (PropositionGroup sentences : doc.select(S, T).where(T).coveredBy(S).stream().collect(QueryCollectors.groupBy(doc, S).orderByValue(T).collector())) {
-            List<Token> tokens = sentences.list(T);
-            List<String> strTokens = sentences.list(T).stream().map(Token::text).collect(Collectors.toList());
+        SentenceTokenIndex index = SentenceTokenIndex.of(doc);
+        for (int s = 0; s < index.size(); s++) {
+            List<Token> tokens = index.tokens(s);
+            List<String> strTokens = tokens.stream().map(Token::text).collect(Collectors.toList());
 
             DEPTree tree = NLPGetter.toDEPTree(strTokens);
             for (AbstractComponent component : pipeline)
@@ -0,0 +1,213 @@
+package se.lth.cs.nlp.langforia.common;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import gnu.trove.list.array.TCharArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Aho-Corasick automaton over a set of words, stored in flat arrays.
+ *
+ * Children of a state are kept sorted in one edge array and looked up by binary search,
+ * finding all occurrences of all words in a text takes time linear in the text plus the number of matches.
+ */
+public final class AhoCorasick {
+
+    /** Receives every occurrence of a word */
+    public interface Matches {
+        void match(int start, int end);
+    }
+
+    private final int[] edgeStart;
+    private final char[] edgeChar;
+    private final int[] edgeTarget;
+    private final int[] fail;
+
+    /** Length of the word ending in each state, 0 if none */
+    private final int[] wordLength;
+
+    /** Nearest state on the fail chain that ends a word, -1 if none */
+    private final int[] output;
+
+    private final int words;
+
+    private AhoCorasick(int[] edgeStart, char[] edgeChar, int[] edgeTarget, int[] wordLength, int words) {
+        this.edgeStart = edgeStart;
+        this.edgeChar = edgeChar;
+        this.edgeTarget = edgeTarget;
+        this.wordLength = wordLength;
+        this.words = words;
+
+        int states = wordLength.length;
+        this.fail = new int[states];
+        this.output = new int[states];
+        output[0] = -1;
+
+        //Breadth first, fail links of a state only depend on shallower states
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            fail[edgeTarget[e]] = 0;
+            output[edgeTarget[e]] = -1;
+            queue[tail++] = edgeTarget[e];
+        }
+
+        while(head < tail) {
+            int state = queue[head++];
+            for (int e = edgeStart[state]; e < edgeStart[state+1]; e++) {
+                int child = edgeTarget[e];
+                char ch = edgeChar[e];
+
+                int f = fail[state];
+                int next;
+                while((next = child(f, ch)) == -1 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next == -1 ? 0 : next;
+                output[child] = wordLength[fail[child]] > 0 ? fail[child] : output[fail[child]];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Build an automaton, empty and duplicate words are ignored.
+     */
+    public static AhoCorasick build(Iterable<String> words) {
+        ArrayList<String> sorted = new ArrayList<>();
+        for (String word : words) {
+            if(!word.isEmpty())
+                sorted.add(word);
+        }
+        Collections.sort(sorted);
+
+        //Trie built from sorted words, edges are created in sorted order per parent
+        TIntArrayList edgeParent = new TIntArrayList();
+        TCharArrayList edgeChar = new TCharArrayList();
+        TIntArrayList wordLength = new TIntArrayList();
+        wordLength.add(0);
+
+        TIntArrayList path = new TIntArrayList();
+        path.add(0);
+        String previous = "";
+        int count = 0;
+        for (String word : sorted) {
+            if(word.equals(previous))
+                continue;
+
+            int common = 0;
+            int max = Math.min(word.length(), previous.length());
+            while(common < max && word.charAt(common) == previous.charAt(common)) {
+                common++;
+            }
+
+            path.remove(common + 1, path.size() - common - 1);
+            for (int i = common; i < word.length(); i++) {
+                int state = wordLength.size();
+                wordLength.add(0);
+                edgeParent.add(path.get(i));
+                edgeChar.add(word.charAt(i));
+                path.add(state);
+            }
+
+            wordLength.set(path.get(word.length()), word.length());
+            previous = word;
+            count++;
+        }
+
+        //Group edges by parent, child states are numbered in creation order: edge i leads to state i + 1
+        int states = wordLength.size();
+        int[] edgeStart = new int[states + 1];
+        for (int i = 0; i < edgeParent.size(); i++) {
+            edgeStart[edgeParent.get(i) + 1]++;
+        }
+        for (int i = 0; i < states; i++) {
+            edgeStart[i + 1] += edgeStart[i];
+        }
+
+        int[] fill = new int[states];
+        char[] chars = new char[edgeParent.size()];
+        int[] targets = new int[edgeParent.size()];
+        for (int i = 0; i < edgeParent.size(); i++) {
+            int parent = edgeParent.get(i);
+            int e = edgeStart[parent] + fill[parent]++;
+            chars[e] = edgeChar.get(i);
+            targets[e] = i + 1;
+        }
+
+        return new AhoCorasick(edgeStart, chars, targets, wordLength.toArray(), count);
+    }
+
+    /**
+     * @return child of a state for a character, -1 if none
+     */
+    private int child(int state, char ch) {
+        int lo = edgeStart[state];
+        int hi = edgeStart[state + 1] - 1;
+        while(lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char c = edgeChar[mid];
+            if(c < ch)
+                lo = mid + 1;
+            else if(c > ch)
+                hi = mid - 1;
+            else
+                return edgeTarget[mid];
+        }
+        return -1;
+    }
+
+    /**
+     * @return number of words
+     */
+    public int size() {
+        return words;
+    }
+
+    /**
+     * @return true if the range of the text is one of the words
+     */
+    public boolean contains(CharSequence text, int start, int end) {
+        int state = 0;
+        for (int i = start; i < end && state != -1; i++) {
+            state = child(state, text.charAt(i));
+        }
+        return state != -1 && wordLength[state] == end - start && end > start;
+    }
+
+    /**
+     * Report all occurrences of words in text[start, end), ordered by end position
+     */
+    public void find(CharSequence text, int start, int end, Matches matches) {
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            char ch = text.charAt(i);
+            int next;
+            while((next = child(state, ch)) == -1 && state != 0) {
+                state = fail[state];
+            }
+            state = next == -1 ? 0 : next;
+
+            for (int s = wordLength[state] > 0 ? state : output[state]; s > 0; s = output[s]) {
+                matches.match(i + 1 - wordLength[s], i + 1);
+            }
+        }
+    }
+}
@@ -22,26 +22,44 @@ import se.lth.cs.docforia.graph.TokenProperties;
 import se.lth.cs.docforia.graph.text.Token;
 import se.lth.cs.nlp.langforia.kernel.structure.LanguageTool;
 import se.lth.cs.nlp.langforia.kernel.structure.PartOfSpeechMapper;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
 
+/**
+ * Sets the coarse part of speech of every token from its fine tag using a {@link CompiledPartOfSpeechMapper}.
+ */
+@Layers(reads = Token.class, writes = Token.class)
 public class CoarsePosTagConverter implements LanguageTool {
-    private final PartOfSpeechMapper mapper;
+    private final CompiledPartOfSpeechMapper mapper;
 
     @Inject
     public CoarsePosTagConverter(PartOfSpeechMapper mapper) {
-        this.mapper = mapper;
+        this.mapper = CompiledPartOfSpeechMapper.compile(mapper);
     }
 
-    @Override
-    public void apply(Document doc) {
-        for (Token token : doc.nodes(Token.class)) {
+    /**
+     * Convert a whole token layer in one pass
+     */
+    public void convert(Iterable<Token> tokens) {
+        String last = null;
+        String lastCoarse = null;
+        for (Token token : tokens) {
             String posTag = token.getProperty(TokenProperties.POS);
-            if(posTag != null) {
-                String result = mapper.fromLanguage(posTag);
-                if(result != null)
-                {
-                    token.putProperty(TokenProperties.CPOSTAG, result);
-                }
+            if(posTag == null)
+                continue;
+
+            //Taggers often reuse tag instances
+            if(posTag != last) {
+                last = posTag;
+                lastCoarse = mapper.fromLanguage(posTag);
             }
+
+            if(lastCoarse != null)
+                token.putProperty(TokenProperties.CPOSTAG, lastCoarse);
         }
     }
+
+    @Override
+    public void apply(Document doc) {
+        convert(doc.nodes(Token.class));
+    }
 }
@@ -0,0 +1,280 @@
+package se.lth.cs.nlp.langforia.common;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import com.google.inject.Inject;
+import se.lth.cs.docforia.graph.text.Token;
+import se.lth.cs.nlp.langforia.kernel.Model;
+import se.lth.cs.nlp.langforia.kernel.resources.FileResource;
+import se.lth.cs.nlp.langforia.kernel.resources.Resource;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable word set stored as sorted words packed into a single UTF-16 buffer.
+ *
+ * Lookups are binary searches that compare directly against a range of the document text, no String is
+ * created. The set is loaded either from a word list, one word per line, or from a prebuilt binary image
+ * created with {@link #main(String[])}, which is memory mapped when the resource supports it and then lives
+ * outside of the heap.
+ *
+ * Image layout, little-endian: magic, word count, char count, word offsets (count + 1 ints), chars.
+ */
+public class CompactWordSet implements WordSet {
+
+    public static final String MODEL_ID = "lang.common.CompactWordSet.model";
+
+    private static final byte[] MAGIC = "LFWORDS1".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER = MAGIC.length + 8;
+
+    private final IntBuffer offsets;
+    private final CharBuffer chars;
+    private final int count;
+
+    private CompactWordSet(IntBuffer offsets, CharBuffer chars) {
+        this.offsets = offsets;
+        this.chars = chars;
+        this.count = offsets.capacity() - 1;
+    }
+
+    @Inject
+    public CompactWordSet(@Model(MODEL_ID) Resource resource) {
+        CompactWordSet loaded = isImage(resource) ? fromImage(resource.mappedRead()) : build(readWordList(resource));
+        this.offsets = loaded.offsets;
+        this.chars = loaded.chars;
+        this.count = loaded.count;
+    }
+
+    /**
+     * @return true if the resource starts with the image magic
+     */
+    public static boolean isImage(Resource resource) {
+        try(InputStream input = resource.binaryRead()) {
+            byte[] magic = new byte[MAGIC.length];
+            int read = 0;
+            while(read < magic.length) {
+                int n = input.read(magic, read, magic.length - read);
+                if(n == -1)
+                    return false;
+                read += n;
+            }
+            return Arrays.equals(magic, MAGIC);
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+    }
+
+    private static ArrayList<String> readWordList(Resource resource) {
+        ArrayList<String> words = new ArrayList<>();
+        try(BufferedReader reader = new BufferedReader(resource.textRead())) {
+            String line;
+            while( (line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if(trimmed.length() == 0)
+                    continue;
+
+                words.add(trimmed);
+            }
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+        return words;
+    }
+
+    /**
+     * Build a word set, duplicates are removed.
+     */
+    public static CompactWordSet build(Iterable<String> words) {
+        ArrayList<String> sorted = new ArrayList<>();
+        for (String word : words) {
+            sorted.add(word);
+        }
+        Collections.sort(sorted);
+
+        int unique = 0;
+        int length = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            if(i > 0 && sorted.get(i).equals(sorted.get(unique-1)))
+                continue;
+
+            sorted.set(unique++, sorted.get(i));
+            length += sorted.get(i).length();
+        }
+
+        int[] offsets = new int[unique+1];
+        char[] chars = new char[length];
+        int pos = 0;
+        for (int i = 0; i < unique; i++) {
+            String word = sorted.get(i);
+            offsets[i] = pos;
+            word.getChars(0, word.length(), chars, pos);
+            pos += word.length();
+        }
+        offsets[unique] = pos;
+
+        return new CompactWordSet(IntBuffer.wrap(offsets), CharBuffer.wrap(chars));
+    }
+
+    /**
+     * Use an image created by {@link #write(OutputStream)}, the buffer is used as is.
+     */
+    public static CompactWordSet fromImage(ByteBuffer image) {
+        ByteBuffer buffer = image.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if(!Arrays.equals(magic, MAGIC))
+            throw new IOError(new IOException("Not a word set image"));
+
+        int count = buffer.getInt();
+        int length = buffer.getInt();
+
+        buffer.position(HEADER).limit(HEADER + (count + 1) * 4);
+        IntBuffer offsets = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+        buffer.limit(HEADER + (count + 1) * 4 + length * 2).position(HEADER + (count + 1) * 4);
+        CharBuffer chars = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asCharBuffer();
+
+        return new CompactWordSet(offsets, chars);
+    }
+
+    /**
+     * Write the binary image of this set
+     */
+    public void write(OutputStream output) throws IOException {
+        int length = offsets.get(count);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + (count + 1) * 4 + length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC).putInt(count).putInt(length);
+        for (int i = 0; i <= count; i++) {
+            buffer.putInt(offsets.get(i));
+        }
+        for (int i = 0; i < length; i++) {
+            buffer.putChar(chars.get(i));
+        }
+        output.write(buffer.array());
+    }
+
+    /**
+     * Compare word i with text[start, end)
+     */
+    private int compare(int i, CharSequence text, int start, int end) {
+        int from = offsets.get(i);
+        int to = offsets.get(i+1);
+        int n = Math.min(to - from, end - start);
+        for (int k = 0; k < n; k++) {
+            int diff = chars.get(from + k) - text.charAt(start + k);
+            if(diff != 0)
+                return diff;
+        }
+        return (to - from) - (end - start);
+    }
+
+    /**
+     * @return index of the word, or -1
+     */
+    public int indexOf(CharSequence text, int start, int end) {
+        int lo = 0;
+        int hi = count - 1;
+        while(lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(mid, text, start, end);
+            if(cmp < 0)
+                lo = mid + 1;
+            else if(cmp > 0)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    public boolean contains(CharSequence word) {
+        return indexOf(word, 0, word.length()) != -1;
+    }
+
+    @Override
+    public boolean isWord(Token token) {
+        return indexOf(token.getDocument().text(), token.getStart(), token.getEnd()) != -1;
+    }
+
+    @Override
+    public boolean isWord(CharSequence text, int start, int end) {
+        return indexOf(text, start, end) != -1;
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return word i in sorted order
+     */
+    public String word(int i) {
+        int from = offsets.get(i);
+        int to = offsets.get(i+1);
+        char[] word = new char[to - from];
+        for (int k = 0; k < word.length; k++) {
+            word[k] = chars.get(from + k);
+        }
+        return new String(word);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < count;
+            }
+
+            @Override
+            public String next() {
+                if(i >= count)
+                    throw new NoSuchElementException();
+                return word(i++);
+            }
+        };
+    }
+
+    /**
+     * Convert a word list into an image: CompactWordSet words.txt words.bin
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length != 2) {
+            System.err.println("Usage: CompactWordSet <words.txt> <output>");
+            System.exit(1);
+        }
+
+        CompactWordSet words = build(readWordList(new FileResource(new File(args[0]))));
+        try(OutputStream output = new BufferedOutputStream(new FileOutputStream(args[1]))) {
+            words.write(output);
+        }
+        System.out.println("Wrote " + words.count() + " words to " + args[1]);
+    }
+}
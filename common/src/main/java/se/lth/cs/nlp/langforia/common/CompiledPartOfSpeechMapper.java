@@ -0,0 +1,209 @@
+package se.lth.cs.nlp.langforia.common;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import se.lth.cs.nlp.langforia.kernel.structure.PartOfSpeechMapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Mapper that assigns every fine tag of a language a dense integer id once and maps ids to coarse tags
+ * through an array. Coarse tags are canonical String instances, the values of {@link PartOfSpeechMapper.Tags}
+ * when they match, otherwise interned.
+ *
+ * The known tag set of a {@link PartOfSpeechMapperHashMapBacked} is compiled up front, tags of other
+ * mappers are compiled the first time they are seen. Lookups are lock-free.
+ */
+public class CompiledPartOfSpeechMapper implements PartOfSpeechMapper {
+
+    /** Upper bound of compiled tags, protects against taggers producing unbounded tag sets */
+    public static final int MAX_TAGS = 4096;
+
+    private static final class Table {
+        private final String[] keys;
+        private final int[] ids;
+        private final String[] values;
+        private final String[] fine;
+        private final String[] coarse;
+
+        private Table(int capacity, String[] fine, String[] coarse) {
+            this.keys = new String[capacity];
+            this.ids = new int[capacity];
+            this.values = new String[capacity];
+            this.fine = fine;
+            this.coarse = coarse;
+
+            for (int id = 0; id < fine.length; id++) {
+                int slot = slot(fine[id]);
+                keys[slot] = fine[id];
+                ids[slot] = id;
+                values[slot] = coarse[id];
+            }
+        }
+
+        /** @return slot of the tag, or of the empty slot where it belongs */
+        private int slot(String tag) {
+            int mask = keys.length - 1;
+            int slot = mix(tag.hashCode()) & mask;
+            String key;
+            while((key = keys[slot]) != null) {
+                if(key == tag || key.equals(tag))
+                    return slot;
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private int id(String tag) {
+            int slot = slot(tag);
+            return keys[slot] != null ? ids[slot] : -1;
+        }
+    }
+
+    private final PartOfSpeechMapper delegate;
+    private volatile Table table = new Table(16, new String[0], new String[0]);
+
+    public CompiledPartOfSpeechMapper(PartOfSpeechMapper delegate, Iterable<String> tags) {
+        this.delegate = delegate;
+        for (String tag : tags) {
+            id(tag);
+        }
+    }
+
+    /**
+     * @return a compiled mapper, the given one if it already is compiled
+     */
+    public static CompiledPartOfSpeechMapper compile(PartOfSpeechMapper mapper) {
+        if(mapper instanceof CompiledPartOfSpeechMapper)
+            return (CompiledPartOfSpeechMapper)mapper;
+        else if(mapper instanceof PartOfSpeechMapperHashMapBacked)
+            return new CompiledPartOfSpeechMapper(mapper, ((PartOfSpeechMapperHashMapBacked) mapper).fromLanguageMap.keySet());
+        else
+            return new CompiledPartOfSpeechMapper(mapper, Collections.<String>emptyList());
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return canonical instance of a coarse tag
+     */
+    static String canonical(String coarse) {
+        if(coarse == null)
+            return null;
+
+        for (Tags tag : Tags.values()) {
+            if(tag.toString().equals(coarse))
+                return tag.toString();
+        }
+        return coarse.intern();
+    }
+
+    private synchronized int add(String tag) {
+        Table current = table;
+        int id = current.id(tag);
+        if(id != -1)
+            return id;
+
+        if(current.fine.length >= MAX_TAGS)
+            return -1;
+
+        String[] fine = Arrays.copyOf(current.fine, current.fine.length + 1);
+        String[] coarse = Arrays.copyOf(current.coarse, current.coarse.length + 1);
+        id = current.fine.length;
+        fine[id] = tag.intern();
+        coarse[id] = canonical(delegate.fromLanguage(tag));
+
+        int capacity = current.keys.length;
+        while(capacity < fine.length * 4) {
+            capacity *= 2;
+        }
+
+        table = new Table(capacity, fine, coarse);
+        return id;
+    }
+
+    /**
+     * @return id of the fine tag, compiling it if it is new, -1 if the tag set is full
+     */
+    public int id(String tag) {
+        int id = table.id(tag);
+        return id != -1 ? id : add(tag);
+    }
+
+    /**
+     * @return number of compiled fine tags
+     */
+    public int size() {
+        return table.fine.length;
+    }
+
+    /**
+     * @return canonical fine tag of an id
+     */
+    public String fine(int id) {
+        return table.fine[id];
+    }
+
+    /**
+     * @return canonical coarse tag of an id, null if the tag has no coarse tag
+     */
+    public String coarse(int id) {
+        return table.coarse[id];
+    }
+
+    @Override
+    public String fromLanguage(String tag) {
+        Table current = table;
+        int slot = current.slot(tag);
+        if(current.keys[slot] != null)
+            return current.values[slot];
+
+        int id = add(tag);
+        return id != -1 ? coarse(id) : canonical(delegate.fromLanguage(tag));
+    }
+
+    /**
+     * Map fine tags in bulk, null entries stay null.
+     * @param tags  fine tags
+     * @param coarse receives the coarse tags
+     */
+    public void fromLanguage(String[] tags, String[] coarse) {
+        String last = null;
+        String lastCoarse = null;
+        for (int i = 0; i < tags.length; i++) {
+            String tag = tags[i];
+            if(tag == null) {
+                coarse[i] = null;
+            }
+            else if(tag == last) {
+                coarse[i] = lastCoarse;
+            }
+            else {
+                last = tag;
+                lastCoarse = coarse[i] = fromLanguage(tag);
+            }
+        }
+    }
+
+    @Override
+    public String[] toLanguage(String tag) {
+        return delegate.toLanguage(tag);
+    }
+}
@@ -0,0 +1,260 @@
+package se.lth.cs.nlp.langforia.common;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import com.google.inject.Inject;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.graph.text.Token;
+import se.lth.cs.nlp.langforia.kernel.LanguageCode;
+import se.lth.cs.nlp.langforia.kernel.Model;
+import se.lth.cs.nlp.langforia.kernel.resources.Resource;
+import se.lth.cs.nlp.langforia.kernel.structure.Compounder;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
+
+import java.io.BufferedReader;
+import java.io.IOError;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Splits compounds into words of a lexicon, optionally joined by linking elements such as the
+ * Swedish fogemorfem -s- in "sjukhus-s-chef" or the German Fugenelement -en- in "Stern-en-himmel".
+ *
+ * All lexicon words within a token are found with an {@link AhoCorasick} automaton, the split with
+ * the fewest parts is then chosen by dynamic programming, linear in the length of the token and the
+ * number of matches. Words that are in the lexicon themselves are not split. Results are memoized
+ * per surface form within a batch.
+ *
+ * The lexicon is a word list, one word per line, loaded on first use.
+ */
+@Layers(reads = Token.class, writes = Token.class)
+public class DictionaryCompounder implements Compounder {
+    public static final String MODEL_ID = "lang.common.DictionaryCompounder.lexicon";
+
+    /** Start offsets within the token of all parts but the first, e.g. "4,7" */
+    public static final String PROPERTY_SPLITS = "compound-splits";
+
+    /** Parts without linking elements separated by |, e.g. "sjuk|hus|chef" */
+    public static final String PROPERTY_PARTS = "compound-parts";
+
+    /** Shortest part that is considered */
+    public static final int MIN_PART = 3;
+
+    private static final String[] NO_SPLIT = new String[0];
+
+    private final Resource resource;
+    private final Locale locale;
+    private final String[] linkers;
+    private volatile AhoCorasick lexicon;
+
+    @Inject
+    public DictionaryCompounder(@LanguageCode String lang, @Model(MODEL_ID) Resource resource) {
+        this.resource = resource;
+        this.locale = new Locale(lang);
+        this.linkers = linkers(lang);
+    }
+
+    public DictionaryCompounder(String lang, AhoCorasick lexicon) {
+        this.resource = null;
+        this.locale = new Locale(lang);
+        this.linkers = linkers(lang);
+        this.lexicon = lexicon;
+    }
+
+    /**
+     * @return linking elements of a language, longest first
+     */
+    static String[] linkers(String lang) {
+        switch (lang) {
+            case "sv":
+                return new String[] {"s", "a", "e", "o", "u"};
+            case "de":
+                return new String[] {"ens", "es", "en", "er", "n", "s", "e"};
+            default:
+                return new String[0];
+        }
+    }
+
+    private AhoCorasick lexicon() {
+        AhoCorasick current = lexicon;
+        if(current == null) {
+            synchronized (this) {
+                current = lexicon;
+                if(current == null) {
+                    ArrayList<String> words = new ArrayList<>();
+                    try(BufferedReader reader = new BufferedReader(resource.textRead())) {
+                        String line;
+                        while( (line = reader.readLine()) != null) {
+                            String trimmed = line.trim();
+                            if(trimmed.length() >= MIN_PART)
+                                words.add(trimmed.toLowerCase(locale));
+                        }
+                    } catch (IOException e) {
+                        throw new IOError(e);
+                    }
+
+                    lexicon = current = AhoCorasick.build(words);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Split a word
+     * @return start offsets of all parts followed by their ends, empty if the word is not a compound
+     */
+    public int[] split(String word) {
+        final int n = word.length();
+        if(n < 2 * MIN_PART)
+            return new int[0];
+
+        for (int i = 0; i < n; i++) {
+            if(!Character.isLetter(word.charAt(i)))
+                return new int[0];
+        }
+
+        //Words of the lexicon are not split, even if they are compounds
+        final String lower = word.toLowerCase(locale);
+        final AhoCorasick lexicon = lexicon();
+        if(lower.length() != n || lexicon.contains(lower, 0, n))
+            return new int[0];
+
+        //Lexicon words by start position, as linked lists
+        final int[] first = new int[n];
+        Arrays.fill(first, -1);
+        final ArrayList<int[]> matches = new ArrayList<>();
+        lexicon.find(lower, 0, n, (start, end) -> {
+            if(end - start >= MIN_PART && end - start < n) {
+                matches.add(new int[] {end, first[start]});
+                first[start] = matches.size() - 1;
+            }
+        });
+
+        //cost = parts * n + linker characters, at a part boundary (A) or after a linking element (B)
+        final int inf = Integer.MAX_VALUE;
+        int[] costA = new int[n + 1];
+        int[] costB = new int[n + 1];
+        int[] fromA = new int[n + 1];
+        int[] fromB = new int[n + 1];
+        boolean[] viaB = new boolean[n + 1];
+        Arrays.fill(costA, inf);
+        Arrays.fill(costB, inf);
+        costA[0] = 0;
+
+        for (int i = 0; i < n; i++) {
+            int base = Math.min(costA[i], costB[i]);
+            if(base == inf)
+                continue;
+
+            for (int m = first[i]; m != -1; m = matches.get(m)[1]) {
+                int end = matches.get(m)[0];
+                if(base + n < costA[end]) {
+                    costA[end] = base + n;
+                    fromA[end] = i;
+                    viaB[end] = costB[i] < costA[i];
+                }
+            }
+
+            if(i > 0 && costA[i] != inf) {
+                for (String linker : linkers) {
+                    int end = i + linker.length();
+                    if(end < n && lower.startsWith(linker, i) && costA[i] + linker.length() < costB[end]) {
+                        costB[end] = costA[i] + linker.length();
+                        fromB[end] = i;
+                    }
+                }
+            }
+        }
+
+        if(costA[n] == inf)
+            return new int[0];
+
+        //Backtrack
+        ArrayList<int[]> parts = new ArrayList<>();
+        int pos = n;
+        boolean after = false;
+        while(pos > 0) {
+            if(after) {
+                pos = fromB[pos];
+                after = false;
+            }
+            else {
+                parts.add(new int[] {fromA[pos], pos});
+                after = viaB[pos];
+                pos = fromA[pos];
+            }
+        }
+
+        int[] result = new int[parts.size() * 2];
+        for (int i = 0; i < parts.size(); i++) {
+            int[] part = parts.get(parts.size() - 1 - i);
+            result[i] = part[0];
+            result[parts.size() + i] = part[1];
+        }
+        return result;
+    }
+
+    /**
+     * @return {splits, parts} properties of a word, empty if it is not a compound
+     */
+    private String[] properties(String word) {
+        int[] split = split(word);
+        if(split.length == 0)
+            return NO_SPLIT;
+
+        int k = split.length / 2;
+        StringBuilder splits = new StringBuilder();
+        StringBuilder parts = new StringBuilder();
+        for (int i = 0; i < k; i++) {
+            if(i > 0) {
+                splits.append(i > 1 ? "," : "").append(split[i]);
+                parts.append('|');
+            }
+            parts.append(word, split[i], split[k + i]);
+        }
+        return new String[] {splits.toString(), parts.toString()};
+    }
+
+    /**
+     * Split the tokens of several documents, sharing memoized results between them
+     */
+    public void apply(Iterable<Document> docs) {
+        HashMap<String,String[]> memo = new HashMap<>();
+        for (Document doc : docs) {
+            apply(doc, memo);
+        }
+    }
+
+    private void apply(Document doc, HashMap<String,String[]> memo) {
+        for (Token token : doc.nodes(Token.class)) {
+            String[] properties = memo.computeIfAbsent(token.text(), this::properties);
+            if(properties != NO_SPLIT) {
+                token.putProperty(PROPERTY_SPLITS, properties[0]);
+                token.putProperty(PROPERTY_PARTS, properties[1]);
+            }
+        }
+    }
+
+    @Override
+    public void apply(Document doc) {
+        apply(doc, new HashMap<>());
+    }
+}
@@ -19,35 +19,21 @@ package se.lth.cs.nlp.langforia.common;
 import se.lth.cs.docforia.Document;
 import se.lth.cs.docforia.graph.text.Sentence;
 import se.lth.cs.nlp.langforia.kernel.structure.SentenceSplitter;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
 
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Splits on . ! ? ¡ ¿ followed by whitespace, ignoring terminators within quotes and parentheses,
+ * as defined by {@link #PATTERN}. Splitting is done in a single pass by {@link SentenceScanner}.
+ */
+@Layers(writes = Sentence.class)
 public class RegexSentenceSplitter implements SentenceSplitter {
-    private Pattern sentenceSegments = Pattern.compile("(([\\.\\!\\?¡¿])[\\p{Z}\\n\\ ]+(?=\\s*\\p{L}|\\s*[^\\p{L}]))|([«»‹›\\‘\\’\\“\\”\\'\\'\\\"\\\"].+?[«»‹›\\‘\\’\\“\\”\\'\\'\\\"\\\"])|(\\(.+?\\))", Pattern.UNICODE_CHARACTER_CLASS);
+    /** Reference definition of the boundaries, {@link SentenceScanner} produces identical sentences */
+    public static final Pattern PATTERN = Pattern.compile("(([\\.\\!\\?¡¿])[\\p{Z}\\n\\ ]+(?=\\s*\\p{L}|\\s*[^\\p{L}]))|([«»‹›\\‘\\’\\“\\”\\'\\'\\\"\\\"].+?[«»‹›\\‘\\’\\“\\”\\'\\'\\\"\\\"])|(\\(.+?\\))", Pattern.UNICODE_CHARACTER_CLASS);
 
     @Override
     public void apply(Document doc) {
-        Matcher matcher = sentenceSegments.matcher(doc.text());
-        int last = 0;
-
-        while(matcher.find()) {
-            if(matcher.group(3) != null)
-                continue;
-
-            if(matcher.group(4) != null)
-                continue;
-
-            int current = matcher.end(2);
-            if(last != current)
-            {
-                new Sentence(doc).setRange(last,current);
-                last = matcher.end();
-            }
-        }
-
-        if(last != doc.length()) {
-            new Sentence(doc).setRange(last,doc.length());
-        }
+        SentenceScanner.split(doc.text(), (start, end) -> new Sentence(doc).setRange(start, end));
     }
 }
@@ -20,20 +20,23 @@ import se.lth.cs.docforia.Document;
 import se.lth.cs.docforia.graph.text.Sentence;
 import se.lth.cs.docforia.graph.text.Token;
 import se.lth.cs.nlp.langforia.kernel.structure.Tokenizer;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
 
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Splits sentences into numbers, uppercase abbreviations, words and single punctuation characters
+ * as defined by {@link #PATTERN}. Tokenization is done by {@link TokenScanner} directly on the document text.
+ */
+@Layers(reads = Sentence.class, writes = Token.class)
 public class RegexTokenizer  implements Tokenizer{
-    private Pattern pattern = Pattern.compile("(?:([+\\-]?[\\p{N}]+(?:[\\.\\,][\\p{N}]{3})*[\\.\\,]?[\\p{N}]*))|(?:(?:[\\p{Lu}]{2,})|(?:[\\p{Lu}]\\.[\\p{Lu}])[\\p{Lu}\\.]*)|[^\\s\\p{P}]+|[\\p{P}]", Pattern.UNICODE_CHARACTER_CLASS);
+    /** Reference definition of the tokens, {@link TokenScanner} produces identical matches */
+    public static final Pattern PATTERN = Pattern.compile("(?:([+\\-]?[\\p{N}]+(?:[\\.\\,][\\p{N}]{3})*[\\.\\,]?[\\p{N}]*))|(?:(?:[\\p{Lu}]{2,})|(?:[\\p{Lu}]\\.[\\p{Lu}])[\\p{Lu}\\.]*)|[^\\s\\p{P}]+|[\\p{P}]", Pattern.UNICODE_CHARACTER_CLASS);
 
     @Override
     public void apply(Document doc) {
-        doc.store().nodeLayer(Document.nodeLayer(Sentence.class)).forEach(sent -> {
-            Matcher matcher = pattern.matcher(doc.text(sent.getStart(),sent.getEnd()));
-            while(matcher.find()) {
-                new Token(doc).setRange(matcher.start()+sent.getStart(),matcher.end()+sent.getStart());
-            }
-        });
+        final String text = doc.text();
+        final TokenScanner.Sink sink = (start, end) -> new Token(doc).setRange(start, end);
+        doc.store().nodeLayer(Document.nodeLayer(Sentence.class)).forEach(sent -> TokenScanner.scan(text, sent.getStart(), sent.getEnd(), sink));
     }
 }
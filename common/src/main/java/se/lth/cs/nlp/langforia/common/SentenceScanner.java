@@ -0,0 +1,226 @@
+package se.lth.cs.nlp.langforia.common;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * Single pass sentence boundary scanner with the rules of {@link RegexSentenceSplitter#PATTERN}.
+ *
+ * A sentence ends after . ! ? ¡ ¿ followed by spaces or newlines, terminators within quotes or
+ * parentheses on the same line are ignored. Quotes and parentheses never look beyond the end of the
+ * line, and an opening character that failed to close is remembered so that the following ones on
+ * the same line fail without rescanning, which keeps the scan linear.
+ *
+ * The scanner works either on a complete text or incrementally on chunks, only the part of the
+ * current line that is still undecided is buffered.
+ */
+public final class SentenceScanner {
+
+    /** Receives the range of every sentence, offsets are relative to the start of the text */
+    public interface Sink {
+        void sentence(int start, int end);
+    }
+
+    private final Sink sink;
+    private final StringBuilder buffer = new StringBuilder();
+
+    /** Absolute offset of the first character in the buffer */
+    private int offset;
+
+    /** Next position to decide, relative to the buffer */
+    private int pos;
+
+    /** Start of the current sentence */
+    private int last;
+
+    /** Where an undecided scan from pos should resume, relative to the buffer, 0 if none */
+    private int resume;
+
+    /** Opening characters before these absolute offsets are known to be unclosed */
+    private int quoteFailed;
+    private int parenFailed;
+
+    public SentenceScanner(Sink sink) {
+        this.sink = sink;
+    }
+
+    static boolean isTerminal(char ch) {
+        return ch == '.' || ch == '!' || ch == '?' || ch == '¡' || ch == '¿';
+    }
+
+    static boolean isQuote(char ch) {
+        switch (ch) {
+            case '«': case '»': case '‹': case '›':
+            case '‘': case '’': case '“': case '”':
+            case '\'': case '"':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** [\p{Z}\n ] */
+    static boolean isSpace(char ch) {
+        if(ch == '\n' || ch == ' ')
+            return true;
+
+        switch (Character.getType(ch)) {
+            case Character.SPACE_SEPARATOR:
+            case Character.LINE_SEPARATOR:
+            case Character.PARAGRAPH_SEPARATOR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Characters not matched by . */
+    static boolean isLineTerminator(char ch) {
+        return ch == '\n' || ch == '\r' || ch == '\u0085' || ch == 0x2028 || ch == 0x2029;
+    }
+
+    /**
+     * Decide as many positions as possible
+     * @param eof true if text holds everything that remains
+     */
+    private void scan(CharSequence text, boolean eof) {
+        final int length = text.length();
+        while(pos < length) {
+            char ch = text.charAt(pos);
+            if(isTerminal(ch)) {
+                int r = Math.max(pos + 1, resume);
+                while(r < length && isSpace(text.charAt(r))) {
+                    r++;
+                }
+
+                if(r == length && !eof) {
+                    resume = r;
+                    return;
+                }
+                resume = 0;
+
+                int run = r - pos - 1;
+                int end = r < length ? r : r - 1;
+                if(run == 0 || (r == length && run < 2)) {
+                    pos++;
+                    continue;
+                }
+
+                sink.sentence(last, offset + pos + 1);
+                last = offset + end;
+                pos = end;
+            }
+            else if(isQuote(ch) || ch == '(') {
+                boolean paren = ch == '(';
+                if(offset + pos < (paren ? parenFailed : quoteFailed)) {
+                    pos++;
+                    continue;
+                }
+
+                //One mandatory character, then the first closing character on the same line
+                int j = pos + 1;
+                if(j < length && !isLineTerminator(text.charAt(j))) {
+                    j = Math.max(pos + 2, resume);
+                    while(j < length) {
+                        char c = text.charAt(j);
+                        if(isLineTerminator(c) || (paren ? c == ')' : isQuote(c)))
+                            break;
+                        j++;
+                    }
+                }
+
+                if(j == length && !eof) {
+                    resume = Math.max(j, pos + 1);
+                    return;
+                }
+                resume = 0;
+
+                if(j < length && j >= pos + 2 && !isLineTerminator(text.charAt(j))) {
+                    pos = j + 1;
+                }
+                else {
+                    if(paren)
+                        parenFailed = offset + j;
+                    else
+                        quoteFailed = offset + j;
+                    pos++;
+                }
+            }
+            else {
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Append the next chunk of text and report all sentences that are complete
+     */
+    public void append(CharSequence chunk) {
+        buffer.append(chunk);
+        scan(buffer, false);
+
+        //Drop what has been decided
+        if(pos > 0) {
+            buffer.delete(0, pos);
+            offset += pos;
+            resume = resume > 0 ? resume - pos : 0;
+            pos = 0;
+        }
+    }
+
+    /**
+     * Signal the end of the text and report the remaining sentences
+     */
+    public void finish() {
+        scan(buffer, true);
+        offset += buffer.length();
+        buffer.setLength(0);
+        pos = 0;
+        resume = 0;
+
+        if(last != offset) {
+            sink.sentence(last, offset);
+            last = offset;
+        }
+    }
+
+    /**
+     * Split a complete text
+     */
+    public static void split(CharSequence text, Sink sink) {
+        SentenceScanner scanner = new SentenceScanner(sink);
+        scanner.scan(text, true);
+        if(scanner.last != text.length())
+            sink.sentence(scanner.last, text.length());
+    }
+
+    /**
+     * Split a text read in chunks, the reader is not closed.
+     */
+    public static void split(Reader reader, Sink sink) throws IOException {
+        SentenceScanner scanner = new SentenceScanner(sink);
+        char[] chunk = new char[8192];
+        int n;
+        while((n = reader.read(chunk)) != -1) {
+            scanner.append(CharBuffer.wrap(chunk, 0, n));
+        }
+        scanner.finish();
+    }
+}
@@ -55,6 +55,11 @@ public class SimpleWordSet implements WordSet {
         return words.contains(token.text());
     }
 
+    @Override
+    public boolean isWord(CharSequence text, int start, int end) {
+        return words.contains(text.subSequence(start, end).toString());
+    }
+
     @Override
     public int count() {
         return words.size();
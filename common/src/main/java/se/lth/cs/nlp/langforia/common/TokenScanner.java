@@ -0,0 +1,222 @@
+package se.lth.cs.nlp.langforia.common;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Hand-written scanner producing exactly the tokens of {@link RegexTokenizer#PATTERN}.
+ *
+ * Character classes of the BMP are precomputed into a table, the alternatives of the pattern
+ * are tried in the same order as the regex engine would, without backtracking or allocation.
+ */
+public final class TokenScanner {
+
+    /** Receives the character range of every token */
+    public interface Sink {
+        void token(int start, int end);
+    }
+
+    static final int NUMBER = 1;
+    static final int UPPERCASE = 2;
+    static final int PUNCTUATION = 4;
+    static final int WHITESPACE = 8;
+
+    private static final byte[] BMP = new byte[Character.MAX_VALUE + 1];
+
+    static {
+        for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+            BMP[ch] = (byte)computeClass(ch);
+        }
+    }
+
+    private TokenScanner() {
+    }
+
+    /**
+     * Character class of a code point as interpreted by the pattern with UNICODE_CHARACTER_CLASS:
+     * \p{N}, \p{Lu}, \p{P} and \s.
+     */
+    static int computeClass(int cp) {
+        switch (Character.getType(cp)) {
+            case Character.DECIMAL_DIGIT_NUMBER:
+            case Character.LETTER_NUMBER:
+            case Character.OTHER_NUMBER:
+                return NUMBER;
+            case Character.UPPERCASE_LETTER:
+                return UPPERCASE;
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return PUNCTUATION;
+            case Character.SPACE_SEPARATOR:
+            case Character.LINE_SEPARATOR:
+            case Character.PARAGRAPH_SEPARATOR:
+                return WHITESPACE;
+            default:
+                return (cp >= 0x9 && cp <= 0xD) || cp == 0x85 ? WHITESPACE : 0;
+        }
+    }
+
+    static int classOf(int cp) {
+        return cp <= Character.MAX_VALUE ? BMP[cp] : computeClass(cp);
+    }
+
+    /**
+     * Code point at i, surrogate pairs are only combined when both halves are before end.
+     */
+    private static int codePointAt(CharSequence text, int i, int end) {
+        char hi = text.charAt(i);
+        if(Character.isHighSurrogate(hi) && i + 1 < end) {
+            char lo = text.charAt(i + 1);
+            if(Character.isLowSurrogate(lo))
+                return Character.toCodePoint(hi, lo);
+        }
+        return hi;
+    }
+
+    /**
+     * @return end of the run of characters of the given class starting at i
+     */
+    private static int skip(CharSequence text, int i, int end, int cls) {
+        while(i < end) {
+            int cp = codePointAt(text, i, end);
+            if((classOf(cp) & cls) == 0)
+                break;
+            i += Character.charCount(cp);
+        }
+        return i;
+    }
+
+    /**
+     * @return end of the run of characters not in the given classes starting at i
+     */
+    private static int skipNot(CharSequence text, int i, int end, int cls) {
+        while(i < end) {
+            int cp = codePointAt(text, i, end);
+            if((classOf(cp) & cls) != 0)
+                break;
+            i += Character.charCount(cp);
+        }
+        return i;
+    }
+
+    private static boolean isChar(CharSequence text, int i, int end, char a, char b) {
+        if(i >= end)
+            return false;
+        char ch = text.charAt(i);
+        return ch == a || ch == b;
+    }
+
+    private static boolean isClass(CharSequence text, int i, int end, int cls) {
+        return i < end && (classOf(codePointAt(text, i, end)) & cls) != 0;
+    }
+
+    /**
+     * [+\-]?\p{N}+(?:[.,]\p{N}{3})*[.,]?\p{N}*
+     * @return end of the number starting at i, or -1
+     */
+    private static int number(CharSequence text, int i, int end) {
+        if(isChar(text, i, end, '+', '-'))
+            i++;
+
+        int digits = skip(text, i, end, NUMBER);
+        if(digits == i)
+            return -1;
+        i = digits;
+
+        //Thousand groups, exactly three digits each
+        while(isChar(text, i, end, '.', ',')) {
+            int k = i + 1;
+            int n = 0;
+            while(n < 3 && isClass(text, k, end, NUMBER)) {
+                k += Character.charCount(codePointAt(text, k, end));
+                n++;
+            }
+
+            if(n < 3)
+                break;
+            i = k;
+        }
+
+        if(isChar(text, i, end, '.', ','))
+            i++;
+
+        return skip(text, i, end, NUMBER);
+    }
+
+    /**
+     * \p{Lu}{2,}|\p{Lu}\.\p{Lu}[\p{Lu}.]*
+     * @return end of the abbreviation starting at i, or -1
+     */
+    private static int abbreviation(CharSequence text, int i, int end) {
+        int run = skip(text, i, end, UPPERCASE);
+        if(run == i)
+            return -1;
+
+        int first = i + Character.charCount(codePointAt(text, i, end));
+        if(run > first)
+            return run;
+
+        if(first >= end || text.charAt(first) != '.' || !isClass(text, first + 1, end, UPPERCASE))
+            return -1;
+
+        i = first + 1;
+        while(i < end) {
+            int cp = codePointAt(text, i, end);
+            if(cp != '.' && (classOf(cp) & UPPERCASE) == 0)
+                break;
+            i += Character.charCount(cp);
+        }
+        return i;
+    }
+
+    /**
+     * Scan the range [start, end) of the text
+     * @return number of tokens
+     */
+    public static int scan(CharSequence text, int start, int end, Sink sink) {
+        int count = 0;
+        int i = start;
+        while(i < end) {
+            int cp = codePointAt(text, i, end);
+            int cls = classOf(cp);
+            if((cls & WHITESPACE) != 0) {
+                i++;
+                continue;
+            }
+
+            int next = number(text, i, end);
+            if(next == -1)
+                next = abbreviation(text, i, end);
+
+            if(next == -1) {
+                if((cls & PUNCTUATION) != 0)
+                    next = i + Character.charCount(cp);
+                else
+                    next = skipNot(text, i, end, WHITESPACE | PUNCTUATION);
+            }
+
+            sink.token(i, next);
+            count++;
+            i = next;
+        }
+        return count;
+    }
+}
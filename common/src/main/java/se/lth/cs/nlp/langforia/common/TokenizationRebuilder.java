@@ -19,46 +19,333 @@ package se.lth.cs.nlp.langforia.common;
 import se.lth.cs.docforia.Document;
 import se.lth.cs.docforia.graph.text.Token;
 
+import java.util.Arrays;
+
+/**
+ * Aligns the output of an external tokenizer with the document text.
+ *
+ * Tokens are matched left to right, first exactly and then after normalization: PTB escapes
+ * (-LRB-, ``, '', \/ ...) are unescaped and quotes, apostrophes and dashes are folded. A token that
+ * does not match at the current position is searched for within a bounded window, so a missing token
+ * costs at most the window instead of a scan to the end of the document. After {@link #RESYNC_MISSES}
+ * consecutive misses the text not covered by the tokenizer is assumed to be longer than the window and the
+ * next token is searched for further ahead, so that alignment resumes after the uncovered stretch. These
+ * searches share a budget of {@link #RESYNC_BUDGET} times the text length, so tokens that are absent from
+ * the text cost at most the window each plus the budget in total. Tokens that cannot be aligned are
+ * reported in the {@link Alignment}.
+ */
 public class TokenizationRebuilder {
 
-    public static Token[] rebuild(Document doc, String[] tokens) {
-        Token[] rebuilt = new Token[tokens.length];
-        String text = doc.text();
+    /** Default number of characters searched past the current position */
+    public static final int DEFAULT_WINDOW = 256;
 
-        int pos = 0;
-        for(int i = 0; i < tokens.length; i++) {
-            if(i + 1 < tokens.length) {
-                //Look at 2 tokens, to make sure that there is no problems with skipped tokens.
-                int match1 = text.indexOf(tokens[i], pos);
-                int match2 = text.indexOf(tokens[i+1], pos);
-
-                if(match1 == -1) {
-                    //no match, means skip!
-                    continue;
+    /** Number of consecutive missing tokens after which a token is searched for in the rest of the text */
+    public static final int RESYNC_MISSES = 4;
+
+    /** Characters searched past the window when resyncing, in multiples of the text length */
+    public static final int RESYNC_BUDGET = 2;
+
+    /** Result of an alignment, starts and ends are -1 for tokens that could not be aligned */
+    public static class Alignment {
+        private final int[] starts;
+        private final int[] ends;
+        private int exact;
+        private int normalized;
+        private int missing;
+        private int skippedCharacters;
+        private long searched;
+
+        private Alignment(int size) {
+            this.starts = new int[size];
+            this.ends = new int[size];
+            Arrays.fill(starts, -1);
+            Arrays.fill(ends, -1);
+        }
+
+        public int size() {
+            return starts.length;
+        }
+
+        public boolean isAligned(int i) {
+            return starts[i] != -1;
+        }
+
+        public int start(int i) {
+            return starts[i];
+        }
+
+        public int end(int i) {
+            return ends[i];
+        }
+
+        /** @return number of tokens identical to the text */
+        public int exact() {
+            return exact;
+        }
+
+        /** @return number of tokens that matched after normalization */
+        public int normalized() {
+            return normalized;
+        }
+
+        /** @return number of tokens that could not be aligned */
+        public int missing() {
+            return missing;
+        }
+
+        /** @return non-whitespace characters of the text not covered by any aligned token */
+        public int skippedCharacters() {
+            return skippedCharacters;
+        }
+
+        /** @return number of positions where a token was tried while searching past the current position */
+        public long searched() {
+            return searched;
+        }
+
+        /** @return fraction of tokens aligned */
+        public double recall() {
+            return size() == 0 ? 1.0 : (size() - missing) / (double)size();
+        }
+
+        @Override
+        public String toString() {
+            return "tokens=" + size() + " exact=" + exact + " normalized=" + normalized
+                    + " missing=" + missing + " skipped chars=" + skippedCharacters + " searched=" + searched;
+        }
+    }
+
+    private static final String[][] escapes = {
+            {"-LRB-", "("}, {"-RRB-", ")"}, {"-LSB-", "["}, {"-RSB-", "]"}, {"-LCB-", "{"}, {"-RCB-", "}"},
+            {"``", "\""}, {"''", "\""}, {"`", "'"}, {"--", "-"}, {"...", "\u2026"}, {"\\/", "/"}, {"\\*", "*"}
+    };
+
+    /**
+     * Fold characters with common typographic variants
+     */
+    static char fold(char ch) {
+        switch (ch) {
+            case '\u201C': case '\u201D': case '\u201E': case '\u201F':
+            case '\u00AB': case '\u00BB': case '\u2033':
+                return '"';
+            case '\u2018': case '\u2019': case '\u201A': case '\u201B':
+            case '\u2039': case '\u203A': case '`': case '\u00B4': case '\u2032':
+                return '\'';
+            case '\u2010': case '\u2011': case '\u2012': case '\u2013': case '\u2014': case '\u2015': case '\u2212':
+                return '-';
+            default:
+                return ch;
+        }
+    }
+
+    /**
+     * Unescape PTB escapes and fold characters
+     */
+    static String normalize(String token) {
+        StringBuilder sb = new StringBuilder(token.length());
+        int i = 0;
+        outer:
+        while(i < token.length()) {
+            for (String[] escape : escapes) {
+                if(token.startsWith(escape[0], i)) {
+                    sb.append(escape[1]);
+                    i += escape[0].length();
+                    continue outer;
                 }
-                else
-                {
-                    if(match2 != -1) {
-                        if(match1 > match2) {
-                            //skip current (false match)
-                            continue;
-                        }
-                        else {
-                            pos = match1+tokens[i].length();
-                            rebuilt[i] = new Token(doc).setRange(match1, match1+tokens[i].length());
-                        }
-                    }
+            }
+            sb.append(fold(token.charAt(i++)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Match a normalized token at position p, whitespace in the token matches any run of whitespace.
+     * @return end of the match or -1
+     */
+    private static int matchNormalized(CharSequence text, int p, int end, String token) {
+        for (int k = 0; k < token.length(); k++) {
+            char ch = token.charAt(k);
+            if(Character.isWhitespace(ch)) {
+                if(p >= end || !Character.isWhitespace(text.charAt(p)))
+                    return -1;
+                while(p < end && Character.isWhitespace(text.charAt(p))) {
+                    p++;
+                }
+                while(k + 1 < token.length() && Character.isWhitespace(token.charAt(k + 1))) {
+                    k++;
                 }
             }
             else {
-                int match1 = text.indexOf(tokens[i], pos);
-                if(match1 != -1) {
-                    rebuilt[i] = new Token(doc).setRange(match1, match1 + tokens[i].length());
+                if(p >= end || fold(text.charAt(p)) != ch)
+                    return -1;
+                p++;
+            }
+        }
+        return p;
+    }
+
+    private static boolean matchExact(CharSequence text, int p, int end, String token) {
+        if(p + token.length() > end)
+            return false;
+
+        for (int k = 0; k < token.length(); k++) {
+            if(text.charAt(p + k) != token.charAt(k))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return end of the token matched at p, negated minus one for a normalized match, or Integer.MIN_VALUE
+     */
+    private static int match(CharSequence text, int p, int end, String token, String normalized) {
+        if(matchExact(text, p, end, token))
+            return p + token.length();
+
+        int e = matchNormalized(text, p, end, normalized);
+        return e > p ? -e - 1 : Integer.MIN_VALUE;
+    }
+
+    /**
+     * @return first position in [from, limit) where the token matches, or -1
+     */
+    private static int search(CharSequence text, int from, int limit, int end, String token, String normalized) {
+        //A match must start with the first character of the token, or its normalized form
+        final char first = token.charAt(0);
+        final char folded = normalized.isEmpty() ? first : normalized.charAt(0);
+        final boolean any = Character.isWhitespace(folded);
+        for (int p = from; p < limit; p++) {
+            char ch = text.charAt(p);
+            if(!any && ch != first && fold(ch) != folded)
+                continue;
+
+            if(match(text, p, end, token, normalized) != Integer.MIN_VALUE)
+                return p;
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(CharSequence text, int p, int end) {
+        while(p < end && Character.isWhitespace(text.charAt(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    public static Alignment align(CharSequence text, String[] tokens) {
+        return align(text, tokens, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Align tokens with the text
+     * @param window number of characters past the current position to search for a token that does not match directly
+     */
+    public static Alignment align(CharSequence text, String[] tokens, int window) {
+        Alignment alignment = new Alignment(tokens.length);
+        final int end = text.length();
+
+        String[] normalized = new String[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            normalized[i] = normalize(tokens[i]);
+        }
+
+        int pos = 0;
+        int misses = 0;
+        long budget = (long)RESYNC_BUDGET * end;
+        for (int i = 0; i < tokens.length; i++) {
+            if(tokens[i].isEmpty()) {
+                alignment.missing++;
+                continue;
+            }
+
+            pos = skipWhitespace(text, pos, end);
+            int start = pos;
+            int m = match(text, pos, end, tokens[i], normalized[i]);
+
+            if(m == Integer.MIN_VALUE) {
+                //Every few misses in a row search past the window, which may be inside an uncovered stretch
+                misses++;
+                int limit = Math.min(end, pos + window);
+                if(misses % RESYNC_MISSES == 0 && budget > 0)
+                    limit = (int)Math.min(end, limit + budget);
+
+                start = search(text, pos, limit, end, tokens[i], normalized[i]);
+                int searched = (start == -1 ? limit : start) - pos;
+
+                //The next token appearing first means this one is missing
+                if(start != -1 && i + 1 < tokens.length && !tokens[i+1].isEmpty()) {
+                    int next = search(text, pos, start, end, tokens[i+1], normalized[i+1]);
+                    searched += (next == -1 ? start : next) - pos;
+                    if(next != -1)
+                        start = -1;
+                }
+
+                alignment.searched += searched;
+                budget -= Math.max(0, searched - 2 * window);
+
+                if(start == -1) {
+                    alignment.missing++;
+                    continue;
                 }
+
+                m = match(text, start, end, tokens[i], normalized[i]);
+            }
+
+            misses = 0;
+            if(m >= 0) {
+                alignment.exact++;
+            } else {
+                alignment.normalized++;
+                m = -m - 1;
             }
+
+            alignment.starts[i] = start;
+            alignment.ends[i] = m;
+            pos = m;
         }
 
+        //Count text that no token covers
+        int covered = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            if(alignment.isAligned(i)) {
+                alignment.skippedCharacters += nonWhitespace(text, covered, alignment.starts[i]);
+                covered = alignment.ends[i];
+            }
+        }
+        alignment.skippedCharacters += nonWhitespace(text, covered, end);
+
+        return alignment;
+    }
+
+    private static int nonWhitespace(CharSequence text, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if(!Character.isWhitespace(text.charAt(i)))
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Create tokens from an alignment
+     * @return the tokens, null for tokens that could not be aligned
+     */
+    public static Token[] rebuild(Document doc, Alignment alignment) {
+        Token[] rebuilt = new Token[alignment.size()];
+        for (int i = 0; i < rebuilt.length; i++) {
+            if(alignment.isAligned(i))
+                rebuilt[i] = new Token(doc).setRange(alignment.start(i), alignment.end(i));
+        }
         return rebuilt;
     }
 
+    /**
+     * Align tokens with the document text and create them
+     * @return the tokens, null for tokens that could not be aligned, use {@link #align(CharSequence, String[])}
+     *         and {@link #rebuild(Document, Alignment)} to inspect the quality of the alignment.
+     */
+    public static Token[] rebuild(Document doc, String[] tokens) {
+        return rebuild(doc, align(doc.text(), tokens));
+    }
+
 }
@@ -20,5 +20,10 @@ import se.lth.cs.docforia.graph.text.Token;
 
 public interface WordSet extends Iterable<String> {
     public boolean isWord(Token token);
+
+    /**
+     * @return true if text[start, end) is a word
+     */
+    public boolean isWord(CharSequence text, int start, int end);
     public int count();
 }
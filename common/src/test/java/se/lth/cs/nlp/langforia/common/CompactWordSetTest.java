@@ -0,0 +1,135 @@
+package se.lth.cs.nlp.langforia.common;
+
+import org.junit.Test;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.graph.text.Token;
+import se.lth.cs.docforia.memstore.MemoryDocument;
+import se.lth.cs.nlp.langforia.kernel.resources.FileResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompactWordSetTest {
+
+    private static List<String> words(CompactWordSet set) {
+        List<String> words = new ArrayList<>();
+        set.forEach(words::add);
+        return words;
+    }
+
+    private static CompactWordSet roundTrip(CompactWordSet set) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        set.write(output);
+        return CompactWordSet.fromImage(ByteBuffer.wrap(output.toByteArray()));
+    }
+
+    @Test
+    public void testBuild() {
+        CompactWordSet set = CompactWordSet.build(Arrays.asList("katt", "hund", "Äpple", "hus", "h", "hundar"));
+
+        assertEquals(6, set.count());
+        assertEquals(Arrays.asList("h", "hund", "hundar", "hus", "katt", "Äpple"), words(set));
+
+        for (String word : words(set)) {
+            assertTrue(word, set.contains(word));
+        }
+        assertFalse(set.contains("hun"));
+        assertFalse(set.contains("hundarna"));
+        assertFalse(set.contains("Katt"));
+        assertFalse(set.contains(""));
+    }
+
+    @Test
+    public void testRange() throws IOException {
+        CompactWordSet set = CompactWordSet.build(Arrays.asList("hund", "hus", "katt"));
+        Document doc = new MemoryDocument("doc", "En hund och en katt i ett hus.");
+        Token hund = new Token(doc).setRange(3, 7);
+        Token och = new Token(doc).setRange(8, 11);
+        Token hu = new Token(doc).setRange(3, 5);
+        Token hus = new Token(doc).setRange(26, 29);
+
+        for (CompactWordSet words : Arrays.asList(set, roundTrip(set))) {
+            assertTrue(words.isWord(hund));
+            assertFalse(words.isWord(och));
+            assertFalse(words.isWord(hu));
+            assertTrue(words.isWord(hus));
+
+            assertTrue(words.isWord(doc.text(), 15, 19));
+            assertFalse(words.isWord(doc.text(), 15, 18));
+            assertFalse(words.isWord(doc.text(), 14, 19));
+        }
+    }
+
+    @Test
+    public void testDuplicates() {
+        CompactWordSet set = CompactWordSet.build(Arrays.asList("b", "a", "b", "c", "a", "a"));
+        assertEquals(3, set.count());
+        assertEquals(Arrays.asList("a", "b", "c"), words(set));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        CompactWordSet set = CompactWordSet.build(Collections.<String>emptyList());
+        assertEquals(0, set.count());
+        assertFalse(set.contains("a"));
+        assertFalse(set.iterator().hasNext());
+
+        CompactWordSet image = roundTrip(set);
+        assertEquals(0, image.count());
+        assertFalse(image.contains("a"));
+    }
+
+    @Test
+    public void testImageRoundTrip() throws IOException {
+        List<String> words = Arrays.asList("alpha", "beta", "gamma", "delta", "été", "中文", "x");
+        CompactWordSet set = CompactWordSet.build(words);
+        CompactWordSet image = roundTrip(set);
+
+        assertEquals(set.count(), image.count());
+        assertEquals(words(set), words(image));
+        for (String word : words) {
+            assertTrue(word, image.contains(word));
+        }
+        assertFalse(image.contains("epsilon"));
+    }
+
+    @Test
+    public void testResource() throws IOException {
+        File dir = Files.createTempDirectory("langforia-words").toFile();
+        File text = new File(dir, "words.txt");
+        File binary = new File(dir, "words.bin");
+        try {
+            Files.write(text.toPath(), "hund\n  katt \n\nhus\nhund\n".getBytes(StandardCharsets.UTF_8));
+            assertFalse(CompactWordSet.isImage(new FileResource(text)));
+
+            CompactWordSet list = new CompactWordSet(new FileResource(text));
+            assertEquals(Arrays.asList("hund", "hus", "katt"), words(list));
+
+            try(OutputStream output = new FileOutputStream(binary)) {
+                list.write(output);
+            }
+            assertTrue(CompactWordSet.isImage(new FileResource(binary)));
+
+            CompactWordSet image = new CompactWordSet(new FileResource(binary));
+            assertEquals(words(list), words(image));
+        } finally {
+            text.delete();
+            binary.delete();
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package se.lth.cs.nlp.langforia.common;
+
+import org.junit.Test;
+import se.lth.cs.nlp.langforia.kernel.structure.PartOfSpeechMapper;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CompiledPartOfSpeechMapperTest {
+    private static final String[] fine = {"NN", "NNS", "NNP", "VB", "VBD", "VBZ", "JJ", "RB", "DT", "IN", "CC", ".", ","};
+    private static final String[] coarse = {"NOUN", "NOUN", "PROPN", "VERB", "VERB", "VERB", "ADJ", "ADV", "DET", "ADP", "CONJ", ".", "."};
+
+    private static PartOfSpeechMapperHashMapBacked hashMapBacked() {
+        PartOfSpeechMapperHashMapBacked mapper = new PartOfSpeechMapperHashMapBacked();
+        for (int i = 0; i < fine.length; i++) {
+            mapper.putFromLanguage(fine[i], new String(coarse[i]));
+        }
+        return mapper;
+    }
+
+    @Test
+    public void testHashMapBacked() {
+        PartOfSpeechMapperHashMapBacked mapper = hashMapBacked();
+        CompiledPartOfSpeechMapper compiled = CompiledPartOfSpeechMapper.compile(mapper);
+        assertEquals(fine.length, compiled.size());
+
+        for (String tag : fine) {
+            String result = compiled.fromLanguage(new String(tag));
+            assertEquals(mapper.fromLanguage(tag), result);
+            assertSame(compiled.fromLanguage(tag), result);
+        }
+
+        assertSame(PartOfSpeechMapper.Tags.NOUN.toString(), compiled.fromLanguage("NN"));
+        assertNull(compiled.fromLanguage("UNKNOWN"));
+        assertSame(compiled, CompiledPartOfSpeechMapper.compile(compiled));
+    }
+
+    @Test
+    public void testLazy() {
+        PartOfSpeechMapper mapper = new PartOfSpeechMapper() {
+            @Override
+            public String[] toLanguage(String tag) {
+                return new String[0];
+            }
+
+            @Override
+            public String fromLanguage(String tag) {
+                return tag.startsWith("V") ? new String("VERB") : tag.startsWith("F") ? "." : null;
+            }
+        };
+
+        CompiledPartOfSpeechMapper compiled = CompiledPartOfSpeechMapper.compile(mapper);
+        assertEquals(0, compiled.size());
+        assertEquals("VERB", compiled.fromLanguage("VMIP3S0"));
+        assertEquals(".", compiled.fromLanguage("Fc"));
+        assertNull(compiled.fromLanguage("NCMS000"));
+        assertEquals(3, compiled.size());
+
+        for (int i = 0; i < CompiledPartOfSpeechMapper.MAX_TAGS + 10; i++) {
+            assertEquals("VERB", compiled.fromLanguage("V" + i));
+        }
+        assertEquals(CompiledPartOfSpeechMapper.MAX_TAGS, compiled.size());
+    }
+
+    @Test
+    public void testBulk() {
+        CompiledPartOfSpeechMapper compiled = CompiledPartOfSpeechMapper.compile(hashMapBacked());
+        String[] tags = {"NN", "NN", null, "VB", "XX", "."};
+        String[] result = new String[tags.length];
+        compiled.fromLanguage(tags, result);
+        assertEquals("NOUN|NOUN|null|VERB|null|.", String.join("|", result));
+    }
+
+    private static void check(PartOfSpeechMapperHashMapBacked mapper, CompiledPartOfSpeechMapper compiled, String[] tags) {
+        String[] result = new String[tags.length];
+        compiled.fromLanguage(tags, result);
+        for (int i = 0; i < tags.length; i++) {
+            assertEquals(mapper.fromLanguage(tags[i]), result[i]);
+        }
+    }
+
+    @Test
+    public void testBulkMatchesHashMap() {
+        PartOfSpeechMapperHashMapBacked mapper = hashMapBacked();
+        CompiledPartOfSpeechMapper compiled = CompiledPartOfSpeechMapper.compile(mapper);
+
+        Random random = new Random(7);
+        String[] fresh = new String[100000];
+        String[] shared = new String[fresh.length];
+        for (int i = 0; i < fresh.length; i++) {
+            shared[i] = fine[random.nextInt(fine.length)];
+            fresh[i] = new String(shared[i]);
+        }
+
+        //Fresh instances per token as read from a stored document, shared instances as set by most taggers
+        check(mapper, compiled, fresh);
+        check(mapper, compiled, shared);
+    }
+}
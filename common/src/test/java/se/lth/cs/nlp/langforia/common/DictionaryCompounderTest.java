@@ -0,0 +1,101 @@
+package se.lth.cs.nlp.langforia.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DictionaryCompounderTest {
+
+    private static String parts(DictionaryCompounder compounder, String word) {
+        int[] split = compounder.split(word);
+        int k = split.length / 2;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < k; i++) {
+            sb.append(i > 0 ? "|" : "").append(word, split[i], split[k + i]);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testAhoCorasick() {
+        List<String> words = Arrays.asList("he", "she", "his", "hers", "s", "e", "ushers");
+        AhoCorasick automaton = AhoCorasick.build(words);
+        assertEquals(words.size(), automaton.size());
+
+        Random random = new Random(1);
+        for (int n = 0; n < 2000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(20);
+            for (int i = 0; i < length; i++) {
+                sb.append("hersuix".charAt(random.nextInt(7)));
+            }
+            String text = sb.toString();
+
+            HashSet<String> expected = new HashSet<>();
+            for (int start = 0; start < text.length(); start++) {
+                for (int end = start + 1; end <= text.length(); end++) {
+                    if(words.contains(text.substring(start, end)))
+                        expected.add(start + ":" + end);
+
+                    assertEquals(words.contains(text.substring(start, end)), automaton.contains(text, start, end));
+                }
+            }
+
+            HashSet<String> found = new HashSet<>();
+            automaton.find(text, 0, text.length(), (start, end) -> assertTrue(found.add(start + ":" + end)));
+            assertEquals(text, expected, found);
+        }
+    }
+
+    @Test
+    public void testSwedish() {
+        DictionaryCompounder compounder = new DictionaryCompounder("sv", AhoCorasick.build(Arrays.asList("sjuk", "hus", "sjukhus", "chef", "tidning", "artikel", "barn", "bok", "dag")));
+
+        assertEquals("sjukhus|chef", parts(compounder, "sjukhuschef"));
+        assertEquals("Sjukhus|chef", parts(compounder, "Sjukhuschef"));
+        assertEquals("tidning|artikel", parts(compounder, "tidningsartikel"));
+        assertEquals("barn|bok", parts(compounder, "barnbok"));
+        assertEquals("", parts(compounder, "sjukhus"));
+        assertEquals("", parts(compounder, "bokhylla"));
+        assertEquals("", parts(compounder, "sjuk-hus"));
+    }
+
+    @Test
+    public void testGerman() {
+        DictionaryCompounder compounder = new DictionaryCompounder("de", AhoCorasick.build(Arrays.asList("stern", "himmel", "arbeit", "zimmer", "kind", "garten")));
+
+        assertEquals("Stern|himmel", parts(compounder, "Sternenhimmel"));
+        assertEquals("Arbeit|zimmer", parts(compounder, "Arbeitszimmer"));
+        assertEquals("Kind|garten", parts(compounder, "Kindergarten"));
+    }
+
+    @Test
+    public void testLargeLexicon() {
+        Random random = new Random(3);
+        List<String> lexicon = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 3 + random.nextInt(8);
+            for (int k = 0; k < length; k++) {
+                sb.append((char)('a' + random.nextInt(26)));
+            }
+            lexicon.add(sb.toString());
+        }
+
+        DictionaryCompounder compounder = new DictionaryCompounder("sv", AhoCorasick.build(lexicon));
+        int compounds = 0;
+        for (int i = 0; i < 100000; i++) {
+            String word = lexicon.get(random.nextInt(lexicon.size())) + "s" + lexicon.get(random.nextInt(lexicon.size()));
+            if(compounder.split(word).length > 0)
+                compounds++;
+        }
+        assertEquals(100000, compounds);
+    }
+}
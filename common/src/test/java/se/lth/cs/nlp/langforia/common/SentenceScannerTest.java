@@ -0,0 +1,119 @@
+package se.lth.cs.nlp.langforia.common;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import static org.junit.Assert.assertEquals;
+
+public class SentenceScannerTest {
+    private static final String[] samples = {
+            "",
+            "One sentence",
+            "First one. Second one! Third? ¿Cuarto? ¡Quinto!  Sixth.",
+            "Trailing space. ",
+            "Trailing spaces.  ",
+            "He said \"Stop. Now.\" and left. Then (see fig. 3. below) it ended.",
+            "«Vem är du? Jag vet inte.» Sedan gick hon. ‘Quoted. Text.’ Done.",
+            "Unbalanced \"quote. It continues.\nNext line. (Unclosed paren. More.\nLast.",
+            "Empty \"\" quotes. And () parens. And \"\"\" triple.",
+            "Windows.\r\nLine endings.\r\nAnd tabs.\tHere.",
+            "No-break. Space. Em space. Line. Paragraph.",
+            "Multiple.\n\n\nNewlines. ... Dots... And!? Mixed.",
+            "(((((Nested. Parens.) Here. ))) Done.",
+    };
+
+    private static List<String> regex(String text) {
+        List<String> sentences = new ArrayList<>();
+        Matcher matcher = RegexSentenceSplitter.PATTERN.matcher(text);
+        int last = 0;
+        while(matcher.find()) {
+            if(matcher.group(3) != null || matcher.group(4) != null)
+                continue;
+
+            int current = matcher.end(2);
+            if(last != current) {
+                sentences.add(last + ":" + current);
+                last = matcher.end();
+            }
+        }
+
+        if(last != text.length())
+            sentences.add(last + ":" + text.length());
+        return sentences;
+    }
+
+    private static List<String> scanner(String text) {
+        List<String> sentences = new ArrayList<>();
+        SentenceScanner.split(text, (s, e) -> sentences.add(s + ":" + e));
+        return sentences;
+    }
+
+    private static List<String> chunked(String text, int size) {
+        List<String> sentences = new ArrayList<>();
+        SentenceScanner scanner = new SentenceScanner((s, e) -> sentences.add(s + ":" + e));
+        for (int i = 0; i < text.length(); i += size) {
+            scanner.append(text.subSequence(i, Math.min(text.length(), i + size)));
+        }
+        scanner.finish();
+        return sentences;
+    }
+
+    private static void check(String text) {
+        List<String> expected = regex(text);
+        assertEquals(text, expected, scanner(text));
+        for (int size : new int[] {1, 2, 3, 7, 64}) {
+            assertEquals(text + " in chunks of " + size, expected, chunked(text, size));
+        }
+    }
+
+    @Test
+    public void testSamples() {
+        for (String sample : samples) {
+            check(sample);
+        }
+    }
+
+    @Test
+    public void testRandom() {
+        char[] alphabet = "ab.!?¿  \n\r\u0085\u00a0\u2028\u2029\"'«»()".toCharArray();
+        Random random = new Random(0xBEEF);
+        char[] text = new char[30];
+        for (int n = 0; n < 100000; n++) {
+            int length = random.nextInt(text.length);
+            for (int i = 0; i < length; i++) {
+                text[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            check(new String(text, 0, length));
+        }
+    }
+
+    @Test
+    public void testReader() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append(samples[i % samples.length]).append(' ');
+        }
+        String text = sb.toString();
+
+        List<String> sentences = new ArrayList<>();
+        SentenceScanner.split(new StringReader(text), (s, e) -> sentences.add(s + ":" + e));
+        assertEquals(regex(text), sentences);
+    }
+
+    @Test
+    public void testUnbalanced() {
+        StringBuilder sb = new StringBuilder();
+        while(sb.length() < 40000) {
+            sb.append("(\" a. b ");
+        }
+        String text = sb.toString();
+
+        assertEquals(regex(text), scanner(text));
+    }
+}
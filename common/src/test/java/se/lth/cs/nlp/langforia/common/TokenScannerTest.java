@@ -0,0 +1,110 @@
+package se.lth.cs.nlp.langforia.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import static org.junit.Assert.assertEquals;
+
+public class TokenScannerTest {
+    private static final String[] samples = {
+            "",
+            "   ",
+            "Hello, world!",
+            "The U.S.A. and the E.U. signed it.",
+            "NATO, UN and EU.BE are acronyms; A.b and A. B are not.",
+            "Population: 146 544 710 (2016), area 17,125,191.5 km² or 1.234.567,89 or 12,34 or 1,2345.",
+            "-5 +7 + - -x +x 3-4 4.5.6 1,000,000.25 ,5 .5 5. 5,",
+            "Росси́я (от греч. Ρωσία — Русь), аббревиатура РФ.",
+            "«Citat» och „Zitat“ – 'quotes' \"quotes\" ...",
+            "Math digits 𝟙𝟚,𝟛𝟜𝟝 and 𐐀𐐁 and emoji 😀!",
+            "Unpaired \uD800 and \uDC00 surrogates \uD800",
+            "Tabs\tand no-break spaces　and\u0085next line",
+            "ⅠⅡⅢ ½ ¾ ٣٤٥ ١٬٢٣٤",
+    };
+
+    private static List<String> regex(String text, int start, int end) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = RegexTokenizer.PATTERN.matcher(text.substring(start, end));
+        while(matcher.find()) {
+            tokens.add((matcher.start() + start) + ":" + (matcher.end() + start));
+        }
+        return tokens;
+    }
+
+    private static List<String> scanner(String text, int start, int end) {
+        List<String> tokens = new ArrayList<>();
+        TokenScanner.scan(text, start, end, (s, e) -> tokens.add(s + ":" + e));
+        return tokens;
+    }
+
+    private static void check(String text) {
+        assertEquals(text, regex(text, 0, text.length()), scanner(text, 0, text.length()));
+    }
+
+    @Test
+    public void testSamples() {
+        for (String sample : samples) {
+            check(sample);
+        }
+    }
+
+    @Test
+    public void testRanges() {
+        for (String sample : samples) {
+            for (int start = 0; start < sample.length(); start += 3) {
+                for (int end = start; end <= sample.length(); end += 5) {
+                    assertEquals(sample.substring(start, end), regex(sample, start, end), scanner(sample, start, end));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAllCodePoints() {
+        StringBuilder sb = new StringBuilder();
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+            sb.setLength(0);
+            sb.append("A").appendCodePoint(cp).append("1").appendCodePoint(cp).append(" ").appendCodePoint(cp).append("B.");
+            check(sb.toString());
+        }
+    }
+
+    @Test
+    public void testRandom() {
+        char[] alphabet = ("aZÅöÖ09٣½Ⅻ.,.,+-  \t\n!?()«»—'\"" + "𝟙𐀀").toCharArray();
+        Random random = new Random(0xC0FFEE);
+        char[] text = new char[40];
+        for (int n = 0; n < 200000; n++) {
+            int length = random.nextInt(text.length);
+            for (int i = 0; i < length; i++) {
+                text[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            check(new String(text, 0, length));
+        }
+    }
+
+    @Test
+    public void testLargeText() {
+        StringBuilder sb = new StringBuilder();
+        while(sb.length() < 4000000) {
+            for (String sample : samples) {
+                sb.append(sample).append('\n');
+            }
+        }
+        String text = sb.toString();
+
+        Matcher matcher = RegexTokenizer.PATTERN.matcher(text);
+        int matches = 0;
+        while(matcher.find()) {
+            matches++;
+        }
+
+        int[] count = new int[1];
+        TokenScanner.scan(text, 0, text.length(), (s, e) -> count[0]++);
+        assertEquals(matches, count[0]);
+    }
+}
@@ -0,0 +1,136 @@
+package se.lth.cs.nlp.langforia.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TokenizationRebuilderTest {
+
+    private static String[] aligned(String text, TokenizationRebuilder.Alignment alignment) {
+        String[] result = new String[alignment.size()];
+        for (int i = 0; i < alignment.size(); i++) {
+            result[i] = alignment.isAligned(i) ? text.substring(alignment.start(i), alignment.end(i)) : null;
+        }
+        return result;
+    }
+
+    @Test
+    public void testExact() {
+        String text = "The cat sat on the mat.";
+        String[] tokens = {"The", "cat", "sat", "on", "the", "mat", "."};
+        TokenizationRebuilder.Alignment alignment = TokenizationRebuilder.align(text, tokens);
+
+        assertEquals(tokens.length, alignment.exact());
+        assertEquals(0, alignment.missing());
+        assertEquals(0, alignment.skippedCharacters());
+        assertEquals(String.join("|", tokens), String.join("|", aligned(text, alignment)));
+    }
+
+    @Test
+    public void testNormalized() {
+        String text = "He said “hi” (twice) — and/or ‘maybe’ don’t…";
+        String[] tokens = {"He", "said", "``", "hi", "''", "-LRB-", "twice", "-RRB-", "--", "and\\/or", "`", "maybe", "'", "don't", "..."};
+        TokenizationRebuilder.Alignment alignment = TokenizationRebuilder.align(text, tokens);
+
+        assertEquals(0, alignment.missing());
+        assertEquals(0, alignment.skippedCharacters());
+        assertEquals("He|said|“|hi|”|(|twice|)|—|and/or|‘|maybe|’|don’t|…", String.join("|", aligned(text, alignment)));
+        assertEquals(5, alignment.exact());
+    }
+
+    @Test
+    public void testMissing() {
+        String text = "Alpha beta gamma delta.";
+        String[] tokens = {"Alpha", "BETA", "gamma", "epsilon", "delta", "."};
+        TokenizationRebuilder.Alignment alignment = TokenizationRebuilder.align(text, tokens);
+
+        assertEquals(2, alignment.missing());
+        assertEquals(4, alignment.skippedCharacters());
+        assertEquals("Alpha|null|gamma|null|delta|.", String.join("|", aligned(text, alignment)));
+    }
+
+    @Test
+    public void testFalseMatch() {
+        //"a" occurs inside "cat", the next token appearing first shows that "a" is missing
+        String text = "the cat";
+        String[] tokens = {"the", "a", "cat"};
+        TokenizationRebuilder.Alignment alignment = TokenizationRebuilder.align(text, tokens);
+        assertEquals("the|null|cat", String.join("|", aligned(text, alignment)));
+    }
+
+    private static String clean(int words, List<String> tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            String word = "w" + (i % 997);
+            tokens.add(word);
+            sb.append(word).append(i % 10 == 9 ? ". " : " ");
+            if(i % 10 == 9)
+                tokens.add(".");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testResync() {
+        //The tokenizer skipped a stretch longer than the window
+        StringBuilder sb = new StringBuilder("Start ");
+        for (int i = 0; i < 1000; i++) {
+            sb.append("zz ");
+        }
+        sb.append("a b c d e f g h.");
+        String text = sb.toString();
+        String[] tokens = {"Start", "a", "b", "c", "d", "e", "f", "g", "h", "."};
+
+        TokenizationRebuilder.Alignment alignment = TokenizationRebuilder.align(text, tokens, 16);
+        assertEquals(TokenizationRebuilder.RESYNC_MISSES - 1, alignment.missing());
+        assertEquals("Start|null|null|null|d|e|f|g|h|.", String.join("|", aligned(text, alignment)));
+    }
+
+    @Test
+    public void testLargeText() {
+        List<String> tokens = new ArrayList<>();
+        String text = clean(200000, tokens);
+
+        TokenizationRebuilder.Alignment alignment = TokenizationRebuilder.align(text, tokens.toArray(new String[tokens.size()]));
+        assertEquals(0, alignment.missing());
+
+        //Every other token is absent from the text
+        List<String> adversarial = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            adversarial.add(tokens.get(i));
+            adversarial.add("absent" + i);
+        }
+
+        alignment = TokenizationRebuilder.align(text, adversarial.toArray(new String[adversarial.size()]));
+        assertEquals(tokens.size(), alignment.missing());
+        assertEquals(0, alignment.skippedCharacters());
+    }
+
+    @Test
+    public void testMostlyAbsent() {
+        List<String> tokens = new ArrayList<>();
+        String text = clean(20000, tokens);
+
+        //Nine of ten tokens are absent, and start like the words of the text
+        List<String> absent = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            absent.add(tokens.get(i));
+            for (int k = 0; k < 9; k++) {
+                absent.add("wx" + k);
+            }
+        }
+
+        TokenizationRebuilder.Alignment alignment = TokenizationRebuilder.align(text, absent.toArray(new String[absent.size()]));
+        assertEquals(9 * tokens.size(), alignment.missing());
+        assertEquals(tokens.size(), alignment.exact());
+
+        //Each miss searches at most the window twice, resyncs share the budget
+        long bound = 2L * TokenizationRebuilder.DEFAULT_WINDOW * alignment.missing()
+                + (long)TokenizationRebuilder.RESYNC_BUDGET * text.length();
+        assertTrue(alignment.searched() + " > " + bound, alignment.searched() <= bound);
+    }
+}
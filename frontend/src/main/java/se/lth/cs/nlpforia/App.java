@@ -21,6 +21,8 @@ import net.codestory.http.WebServer;
 import net.codestory.http.payload.Payload;
 import net.codestory.http.templating.ModelAndView;
 import org.apache.commons.cli.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import se.lth.cs.docforia.Document;
 import se.lth.cs.docforia.graph.TokenProperties;
 import se.lth.cs.docforia.graph.disambig.NamedEntityDisambiguation;
@@ -34,6 +36,9 @@ import se.lth.cs.docforia.memstore.MemoryDocumentFactory;
 //import se.lth.cs.nlp.langforia.common.AnchorLookup;
 import se.lth.cs.nlp.langforia.ext.wikipedia.WikipediaParser;
 import se.lth.cs.nlp.langforia.kernel.Language;
+import se.lth.cs.nlp.langforia.kernel.LanguageWarmup;
+import se.lth.cs.nlp.langforia.kernel.ModelManager;
+import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaRuntimeException;
 import se.lth.cs.nlp.langforia.kernel.structure.Pipelines;
 import se.lth.cs.nlp.langforia.kernel.structure.PipelinesConfiguration;
 import se.lth.cs.nlp.langforia.lang.de.GermanLanguage;
@@ -45,6 +50,8 @@ import se.lth.cs.nlp.langforia.lang.sv.SwedishLanguage;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -52,34 +59,87 @@ import java.util.stream.Collectors;
  */
 public class App
 {
-    public static Map<String,Language> loadLanguages() {
-        HashMap<String,Language> languages = new HashMap<>();
-        languages.put("sv", new SwedishLanguage());
-        languages.put("en", new EnglishLanguage());
-        languages.put("fr", new FrenchLanguage());
-        languages.put("es", new SpanishLanguage());
-        languages.put("de", new GermanLanguage());
-        languages.put("ru", new RussianLanguage());
-
-        return Collections.unmodifiableMap(languages);
+    private static final Logger logger = LoggerFactory.getLogger(App.class);
+
+    public static Map<String,Supplier<Language>> languageFactories() {
+        LinkedHashMap<String,Supplier<Language>> languages = new LinkedHashMap<>();
+        languages.put("sv", SwedishLanguage::new);
+        languages.put("en", EnglishLanguage::new);
+        languages.put("fr", FrenchLanguage::new);
+        languages.put("es", SpanishLanguage::new);
+        languages.put("de", GermanLanguage::new);
+        languages.put("ru", RussianLanguage::new);
+        return languages;
+    }
+
+    /**
+     * Register all languages in a model manager
+     * @param budget approximate memory budget in bytes, Long.MAX_VALUE loads all languages up front.
+     */
+    public static ModelManager loadLanguages(long budget) {
+        ModelManager manager = new ModelManager(budget, LanguageWarmup.newLoaderPool(Math.max(4, Runtime.getRuntime().availableProcessors())));
+        languageFactories().forEach(manager::register);
+
+        if(budget == Long.MAX_VALUE) {
+            //Load all models concurrently, startup is bounded by the slowest model.
+            //A language that fails to load does not stop the others, it is attempted again on use.
+            List<CompletableFuture<Language>> ready = new ArrayList<>();
+            for (String lang : manager.languages()) {
+                ready.add(manager.load(lang).exceptionally(ex -> null));
+            }
+
+            CompletableFuture.allOf(ready.toArray(new CompletableFuture<?>[ready.size()])).join();
+
+            for (String lang : manager.unavailable()) {
+                logger.warn("Language " + lang + " is unavailable: " + manager.failure(lang));
+            }
+        }
+
+        return manager;
+    }
+
+    /**
+     * @return the loaded language or null if it is not registered or failed to load
+     */
+    private static Language available(ModelManager langs, String lang) {
+        try {
+            return langs.get(lang);
+        } catch (LangforiaRuntimeException e) {
+            logger.warn("Language " + lang + " is unavailable", e);
+            return null;
+        }
     }
 
     public static void main( String[] args ) throws Exception
     {
         Options options = new Options();
         options.addOption(Option.builder("p").hasArg(true).type(Integer.class).longOpt("port").build());
+        options.addOption(Option.builder("m").hasArg(true).type(Integer.class).longOpt("model-budget").desc("Memory budget for models in MiB, least recently used languages are unloaded").build());
 
         DefaultParser parser = new DefaultParser();
         ObjectMapper mapper = new ObjectMapper();
 
         try {
-            final Map<String,Language> langs = loadLanguages();
+            CommandLine cmdline = parser.parse(options, args);
+            long budget = cmdline.hasOption("m") ? Long.parseLong(cmdline.getOptionValue("m")) << 20 : Long.MAX_VALUE;
+            final ModelManager langs = loadLanguages(budget);
 
             HashMap<String,Set<String>> languageConfigs = new HashMap<>();
             HashMap<String,String> configFriendlyNames = new HashMap<>();
 
-            for (String lang : langs.keySet()) {
-                PipelinesConfiguration instance = langs.get(lang).getInstance(PipelinesConfiguration.class);
+            for (String lang : langs.languages()) {
+                PipelinesConfiguration instance;
+                try {
+                    //Reuses the loaded language, or the instance that will be loaded on first use.
+                    instance = langs.configuration(lang);
+                } catch (RuntimeException | LinkageError e) {
+                    logger.warn("Language " + lang + " is unavailable", e);
+                    continue;
+                }
+
+                if(instance == null)
+                    continue;
+
                 languageConfigs.put(lang, instance.pipelines().stream().collect(Collectors.toSet()));
 
                 for (String s : instance.pipelines()) {
@@ -90,25 +150,22 @@ public class App
             final String configs = mapper.writeValueAsString(languageConfigs);
             final String friendlyNames = mapper.writeValueAsString(configFriendlyNames);
 
-            CommandLine cmdline = parser.parse(options, args);
-
             new WebServer().configure(routes -> routes
                     .get("/", (context) -> {
                         return ModelAndView.of("index", "Configs", configs, "FriendlyNames", friendlyNames);
                     })
                     .get("/languages", (context) -> {
-                        return langs.keySet();
+                        return langs.languages();
                     })
                     .get("/:lang/", (context, lang) -> {
-                        if(langs.get(lang) != null) {
-                            PipelinesConfiguration instance = langs.get(lang).getInstance(PipelinesConfiguration.class);
-                            return instance.pipelines();
+                        if(languageConfigs.containsKey(lang)) {
+                            return languageConfigs.get(lang);
                         } else {
                             return new Payload("text/html", "404 Could not find language", 404);
                         }
                     })
                     .get("/:lang/:config/", (context, lang, config) -> {
-                        if(langs.get(lang) != null) {
+                        if(languageConfigs.containsKey(lang)) {
                             return ModelAndView.of("docs");
                         } else {
                             return new Payload("text/html", "404 Could not find language", 404);
@@ -119,10 +176,9 @@ public class App
                     })
                     .post("/:lang/:config/api/json", (context, lang, config) -> {
                         Language language;
-                        if((language = langs.get(lang)) != null && languageConfigs.get(lang).contains(config)) {
+                        if(languageConfigs.containsKey(lang) && languageConfigs.get(lang).contains(config) && (language = available(langs, lang)) != null) {
                             Pipelines pipelines = language.getInstance(Pipelines.class);
-                            MemoryDocument doc = new MemoryDocument("dynamic", context.request().content());
-                            pipelines.apply(config, doc);
+                            Document doc = pipelines.apply(config, new MemoryDocument("dynamic", context.request().content()));
                             return new Payload("application/json; charset=utf-8", doc.toJson());
                         } else {
                             return new Payload("application/json", "{\"errorCode\":404,\"message\":\"Could not find language or configuration\"}", 404);
@@ -130,10 +186,9 @@ public class App
                     })
                     .post("/:lang/:config/api/binary", (context, lang, config) -> {
                         Language language;
-                        if((language = langs.get(lang)) != null && languageConfigs.get(lang).contains(config)) {
+                        if(languageConfigs.containsKey(lang) && languageConfigs.get(lang).contains(config) && (language = available(langs, lang)) != null) {
                             Pipelines pipelines = language.getInstance(Pipelines.class);
-                            MemoryDocument doc = new MemoryDocument("dynamic", context.request().content());
-                            pipelines.apply(config, doc);
+                            Document doc = pipelines.apply(config, new MemoryDocument("dynamic", context.request().content()));
                             return new Payload("application/x-docforia", doc.toJson());
                         } else {
                             return new Payload("text/html", "404 Could not find language or configuration", 404);
@@ -141,10 +196,9 @@ public class App
                     })
                     .post("/:lang/:config/api/tsv", (context, lang, config) -> {
                         Language language;
-                        if((language = langs.get(lang)) != null && languageConfigs.get(lang).contains(config)) {
+                        if(languageConfigs.containsKey(lang) && languageConfigs.get(lang).contains(config) && (language = available(langs, lang)) != null) {
                             Pipelines pipelines = language.getInstance(Pipelines.class);
-                            MemoryDocument doc = new MemoryDocument("dynamic", new String(context.request().contentAsBytes(), "utf-8"));
-                            pipelines.apply(config, doc);
+                            Document doc = pipelines.apply(config, new MemoryDocument("dynamic", new String(context.request().contentAsBytes(), "utf-8")));
 
                             ArrayList<String> columns = new ArrayList<String>();
 
@@ -195,10 +249,9 @@ public class App
                     })
                     .post("/:lang/:config/api/annoviz", (context, lang, config) -> {
                         Language language;
-                        if((language = langs.get(lang)) != null && languageConfigs.get(lang).contains(config)) {
+                        if(languageConfigs.containsKey(lang) && languageConfigs.get(lang).contains(config) && (language = available(langs, lang)) != null) {
                             Pipelines pipelines = language.getInstance(Pipelines.class);
-                            MemoryDocument doc = new MemoryDocument("dynamic", context.request().content());
-                            pipelines.apply(config, doc);
+                            Document doc = pipelines.apply(config, new MemoryDocument("dynamic", context.request().content()));
                             return new Payload("application/json; charset=utf-8", Document2VizJSON.toJson(doc));
                         } else {
                             return new Payload("text/html", "404 Could not find language or configuration", 404);
@@ -206,12 +259,12 @@ public class App
                     })
                     .post("/:lang/:config/api/wikipedia/annoviz", (context, lang, config) -> {
                         Language language;
-                        if((language = langs.get(lang)) != null && languageConfigs.get(lang).contains(config)) {
+                        if(languageConfigs.containsKey(lang) && languageConfigs.get(lang).contains(config) && (language = available(langs, lang)) != null) {
                             Pipelines pipelines = language.getInstance(Pipelines.class);
                             WikipediaParser wikihtmlparser = new WikipediaParser(lang, MemoryDocumentFactory.getInstance(), WikipediaParser.Mode.WIKIPEDIA);
                             Document doc = wikihtmlparser.parse("dynamic", context.request().content());
 
-                            pipelines.apply(config, doc);
+                            doc = pipelines.apply(config, doc);
                             //language.apply(doc, AnchorLookup.class);
                             return new Payload("application/json; charset=utf-8", Document2VizJSON.toJson(doc));
                         } else {
@@ -220,12 +273,12 @@ public class App
                     })
                     .post("/:lang/:config/api/wikipedia/json", (context, lang, config) -> {
                         Language language;
-                        if((language = langs.get(lang)) != null && languageConfigs.get(lang).contains(config)) {
+                        if(languageConfigs.containsKey(lang) && languageConfigs.get(lang).contains(config) && (language = available(langs, lang)) != null) {
                             Pipelines pipelines = language.getInstance(Pipelines.class);
                             WikipediaParser wikihtmlparser = new WikipediaParser(lang, MemoryDocumentFactory.getInstance(), WikipediaParser.Mode.WIKIPEDIA);
                             Document doc = wikihtmlparser.parse("dynamic", context.request().content());
 
-                            pipelines.apply(config, doc);
+                            doc = pipelines.apply(config, doc);
                             //language.apply(doc, AnchorLookup.class);
                             return new Payload("application/json; charset=utf-8", doc.toJson());
                         } else {
@@ -234,12 +287,12 @@ public class App
                     })
                     .post("/:lang/:config/api/wikipedia/binary", (context, lang, config) -> {
                         Language language;
-                        if((language = langs.get(lang)) != null && languageConfigs.get(lang).contains(config)) {
+                        if(languageConfigs.containsKey(lang) && languageConfigs.get(lang).contains(config) && (language = available(langs, lang)) != null) {
                             Pipelines pipelines = language.getInstance(Pipelines.class);
                             WikipediaParser wikihtmlparser = new WikipediaParser(lang, MemoryDocumentFactory.getInstance(), WikipediaParser.Mode.WIKIPEDIA);
                             Document doc = wikihtmlparser.parse("dynamic", context.request().content());
 
-                            pipelines.apply(config, doc);
+                            doc = pipelines.apply(config, doc);
                             //language.apply(doc, AnchorLookup.class);
                             return new Payload("application/x-docforia", doc.toBytes());
                         } else {
@@ -21,13 +21,22 @@ import com.google.inject.Injector;
 import se.lth.cs.docforia.Document;
 import se.lth.cs.docforia.DocumentFactory;
 import se.lth.cs.docforia.memstore.MemoryDocumentFactory;
+import se.lth.cs.nlp.langforia.kernel.metrics.StageListener;
+import se.lth.cs.nlp.langforia.kernel.metrics.StageMeasurement;
+import se.lth.cs.nlp.langforia.kernel.structure.BatchPipelines;
 import se.lth.cs.nlp.langforia.kernel.structure.LanguageTool;
+import se.lth.cs.nlp.langforia.kernel.structure.PipelinePlan;
+
+import java.util.List;
+import java.util.concurrent.Executor;
 
 public abstract class Language extends NlpforiaInjectorProxy {
 
 	protected final String languageIso639code;
 	protected final Injector globalInjector;
     protected final DocumentFactory factory;
+	private volatile StageListener stageListener;
+	private volatile boolean stageListenerResolved;
 
     public Language(final String lang, final LanguageModule module) {
         this(MemoryDocumentFactory.getInstance(), lang, null, module);
@@ -63,14 +72,23 @@ public abstract class Language extends NlpforiaInjectorProxy {
         return apply(doc, tools);
     }
 
+	/**
+	 * Apply the tools in order, state the tools share per document is released when the last one is done,
+	 * see {@link PipelinePlan#begin(Document)}
+	 */
 	public <T extends LanguageTool> Document apply(final Document doc, final Class<? extends T>...tools) {
 		if(tools.length == 0)
 			throw new IllegalArgumentException("The length of tools must be larger than 0");
 
-		for(Class<? extends T> tool : tools) {
-			apply(doc, tool);
+		PipelinePlan.begin(doc);
+		try {
+			for(Class<? extends T> tool : tools) {
+				run(doc, getInstance(tool));
+			}
+		} finally {
+			PipelinePlan.end(doc);
 		}
-		
+
 		return doc;
 	}
 
@@ -82,11 +100,68 @@ public abstract class Language extends NlpforiaInjectorProxy {
         return apply(doc, getInstance(tool));
 	}
 	
+	/**
+	 * Apply a tool, state the tool kept per document is released when it is done unless this is nested in
+	 * another application, see {@link PipelinePlan#begin(Document)}
+	 */
 	public <T extends LanguageTool> Document apply(final Document doc, final T toolinstance) {
-		toolinstance.apply(doc);
+		PipelinePlan.begin(doc);
+		try {
+			return run(doc, toolinstance);
+		} finally {
+			PipelinePlan.end(doc);
+		}
+	}
+
+	private Document run(final Document doc, final LanguageTool toolinstance) {
+		StageListener listener = getStageListener();
+		if(listener == null) {
+			toolinstance.apply(doc);
+			return doc;
+		}
+
+		StageMeasurement measurement = StageMeasurement.start(languageIso639code, "", toolinstance.getClass(), doc);
+		boolean failed = true;
+		try {
+			toolinstance.apply(doc);
+			failed = false;
+		} finally {
+			listener.onStage(measurement.stop(doc, failed));
+		}
 		return doc;
 	}
 
+	/**
+	 * @return the listener bound by the language module, or null if stages are not measured
+	 */
+	public final StageListener getStageListener() {
+		if(!stageListenerResolved) {
+			stageListener = hasBinding(StageListener.class) ? getInstance(StageListener.class) : null;
+			stageListenerResolved = true;
+		}
+		return stageListener;
+	}
+
+	/**
+	 * Load all models and pipelines of this language concurrently
+	 * @param loader pool to load on
+	 * @return readiness of the language and each of its pipelines
+	 */
+	public LanguageWarmup warmup(Executor loader) {
+		return LanguageWarmup.start(this, loader);
+	}
+
+	/**
+	 * Apply a pipeline to many documents in parallel
+	 * @param docs documents to annotate
+	 * @param pipeline pipeline id
+	 * @param parallelism number of worker threads
+	 * @return results in input order, failures are reported per document
+	 */
+	public List<BatchPipelines.Result> applyAll(Iterable<Document> docs, String pipeline, int parallelism) {
+		return getInstance(BatchPipelines.class).apply(pipeline, docs, parallelism);
+	}
+
 	public Document newDocument(String id) {
 		return factory.createFragment(id, "");
 	}
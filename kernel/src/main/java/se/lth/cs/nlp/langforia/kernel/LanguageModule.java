@@ -18,6 +18,8 @@ package se.lth.cs.nlp.langforia.kernel;
 
 import com.google.inject.Singleton;
 import se.lth.cs.docforia.DocumentFactory;
+import se.lth.cs.nlp.langforia.kernel.cache.AnnotationCache;
+import se.lth.cs.nlp.langforia.kernel.metrics.StageListener;
 import se.lth.cs.nlp.langforia.kernel.structure.*;
 
 public abstract class LanguageModule extends AbstractLanguageModule {
@@ -39,9 +41,18 @@ public abstract class LanguageModule extends AbstractLanguageModule {
         bind(DocumentFactory.class).toInstance(lang.factory);
         bind(FullPipeline.class).to(FullPipelineImpl.class).in(Singleton.class);
         bind(Pipelines.class).in(Singleton.class);
+        bind(BatchPipelines.class).in(Singleton.class);
     }
 
     protected void bindPipeline(PipelinesConfiguration pipelineconfig) {
         bind(PipelinesConfiguration.class).toInstance(pipelineconfig);
     }
+
+    protected void bindStageListener(StageListener listener) {
+        bind(StageListener.class).toInstance(listener);
+    }
+
+    protected void bindAnnotationCache(AnnotationCache cache) {
+        bind(AnnotationCache.class).toInstance(cache);
+    }
 }
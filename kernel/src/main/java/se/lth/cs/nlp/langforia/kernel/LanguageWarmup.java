@@ -0,0 +1,123 @@
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.lth.cs.nlp.langforia.kernel;
+
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Scopes;
+import com.google.inject.spi.InstanceBinding;
+import se.lth.cs.nlp.langforia.kernel.structure.PipelinePlan;
+import se.lth.cs.nlp.langforia.kernel.structure.Pipelines;
+import se.lth.cs.nlp.langforia.kernel.structure.PipelinesConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Eagerly instantiates the singletons of a language concurrently on a loader pool.
+ *
+ * Every explicitly bound singleton, i.e. models, parsers and taggers, is created as a separate task
+ * followed by the execution plans of all pipelines. A pipeline is ready as soon as its own tools are,
+ * the language once everything is loaded.
+ */
+public class LanguageWarmup {
+    private final Language language;
+    private final Map<Key<?>,CompletableFuture<?>> singletons;
+    private final Map<String,CompletableFuture<PipelinePlan>> pipelines;
+    private final CompletableFuture<Language> ready;
+
+    private LanguageWarmup(Language language, Executor loader) {
+        this.language = language;
+
+        HashMap<Key<?>,CompletableFuture<?>> singletons = new HashMap<>();
+        for (Map.Entry<Key<?>, Binding<?>> entry : language.getBindings().entrySet()) {
+            Binding<?> binding = entry.getValue();
+            if(!Scopes.isSingleton(binding) || binding instanceof InstanceBinding || entry.getKey().getTypeLiteral().getRawType() == Injector.class)
+                continue;
+
+            final Key<?> key = entry.getKey();
+            singletons.put(key, CompletableFuture.supplyAsync(() -> binding.getProvider().get(), loader));
+        }
+        this.singletons = Collections.unmodifiableMap(singletons);
+
+        HashMap<String,CompletableFuture<PipelinePlan>> pipelines = new HashMap<>();
+        if(language.hasBinding(PipelinesConfiguration.class)) {
+            Pipelines instance = language.getInstance(Pipelines.class);
+            for (String id : language.getInstance(PipelinesConfiguration.class).pipelines()) {
+                pipelines.put(id, CompletableFuture.supplyAsync(() -> instance.plan(id), loader));
+            }
+        }
+        this.pipelines = Collections.unmodifiableMap(pipelines);
+
+        List<CompletableFuture<?>> all = new ArrayList<>(singletons.values());
+        all.addAll(pipelines.values());
+        this.ready = CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[all.size()])).thenApply(v -> language);
+    }
+
+    /**
+     * Start loading all singletons of a language
+     * @param language the language to warm up
+     * @param loader   pool to load on, should have one thread per model that may load concurrently
+     */
+    public static LanguageWarmup start(Language language, Executor loader) {
+        return new LanguageWarmup(language, loader);
+    }
+
+    /**
+     * Pool of daemon threads suitable for loading models
+     */
+    public static ExecutorService newLoaderPool(int threads) {
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "langforia-loader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Language language() {
+        return language;
+    }
+
+    /**
+     * @return future completed when all singletons and pipelines are loaded, completed exceptionally if any failed.
+     */
+    public CompletableFuture<Language> ready() {
+        return ready;
+    }
+
+    /**
+     * @return future completed when the plan of the given pipeline is built, null if it does not exist.
+     */
+    public CompletableFuture<PipelinePlan> pipeline(String id) {
+        return pipelines.get(id);
+    }
+
+    public Map<String,CompletableFuture<PipelinePlan>> pipelines() {
+        return pipelines;
+    }
+
+    public Map<Key<?>,CompletableFuture<?>> singletons() {
+        return singletons;
+    }
+}
@@ -0,0 +1,342 @@
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.lth.cs.nlp.langforia.kernel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaRuntimeException;
+import se.lth.cs.nlp.langforia.kernel.metrics.HeapUsage;
+import se.lth.cs.nlp.langforia.kernel.structure.Pipelines;
+import se.lth.cs.nlp.langforia.kernel.structure.PipelinesConfiguration;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Keeps languages loaded within a memory budget.
+ *
+ * Languages are loaded on first use with {@link LanguageWarmup} and the least recently used languages are
+ * unloaded when the approximate size of all loaded languages exceeds the budget. An unloaded language is
+ * loaded again the next time it is requested. Languages are the unit of eviction since the singletons of an
+ * injector cannot be released individually.
+ *
+ * The size of a language is the growth of the retained heap, measured after garbage collection, while it
+ * loads. Languages are only measured with a bounded budget, and are then loaded one at a time so that each
+ * is measured alone. With an unbounded budget languages load concurrently, nothing is measured and their
+ * size is 0. Unloading releases the execution plans of the language, its memory is reclaimed once no
+ * request uses it.
+ */
+public class ModelManager {
+    private static final Logger logger = LoggerFactory.getLogger(ModelManager.class);
+
+    public interface Listener {
+        void onLoad(String lang, long bytes, long nanos);
+        void onEvict(String lang, long bytes);
+    }
+
+    private static class Entry {
+        private final String lang;
+        private final Supplier<Language> factory;
+        private CompletableFuture<Language> loading;
+        private volatile LanguageWarmup warmup;
+        private Language constructed;
+        private volatile PipelinesConfiguration configuration;
+        private volatile long bytes;
+        private volatile long lastUse;
+        private volatile Throwable failure;
+
+        Entry(String lang, Supplier<Language> factory) {
+            this.lang = lang;
+            this.factory = factory;
+        }
+    }
+
+    private final long budget;
+    private final Executor loader;
+    private final LinkedHashMap<String,Entry> entries = new LinkedHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private CompletableFuture<?> previous = CompletableFuture.completedFuture(null);
+    private volatile Listener listener;
+
+    /**
+     * @param budget maximum approximate size in bytes of all loaded languages, a language larger than
+     *               the budget is still loaded but evicts all others. Long.MAX_VALUE disables measuring
+     *               and eviction.
+     * @param loader pool used to load models
+     */
+    public ModelManager(long budget, Executor loader) {
+        this.budget = budget;
+        this.loader = loader;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Register a language, nothing is loaded until it is used.
+     */
+    public synchronized void register(String lang, Supplier<Language> factory) {
+        entries.put(lang, new Entry(lang, factory));
+    }
+
+    public synchronized Set<String> languages() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(entries.keySet()));
+    }
+
+    /**
+     * Get a loaded language, loading it if required. Blocks until it is ready.
+     * @return the language or null if it is not registered
+     */
+    public Language get(String lang) {
+        CompletableFuture<Language> future = load(lang);
+        if(future == null)
+            return null;
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw new LangforiaRuntimeException(lang, "Failed to load language", e.getCause());
+        }
+    }
+
+    /**
+     * Start loading a language if it is not loaded.
+     * @return future completed when the language is ready, or null if it is not registered
+     */
+    public synchronized CompletableFuture<Language> load(String lang) {
+        Entry entry = entries.get(lang);
+        if(entry == null)
+            return null;
+
+        entry.lastUse = System.nanoTime();
+        CompletableFuture<Language> loading = entry.loading;
+        if(loading == null) {
+            final long[] heap = new long[2];
+            final long[] start = new long[1];
+            //Measuring forces full collections and is only meaningful for one load at a time
+            final boolean measure = budget != Long.MAX_VALUE;
+            final CompletableFuture<?> after = measure ? previous : CompletableFuture.completedFuture(null);
+            final CompletableFuture<Language> started = after.handle((v, ex) -> null).thenApplyAsync(v -> {
+                start[0] = System.nanoTime();
+                if(measure)
+                    heap[0] = HeapUsage.retained();
+                return construct(entry);
+            }, loader).thenCompose(language -> {
+                LanguageWarmup warmup = language.warmup(loader);
+                entry.warmup = warmup;
+                return warmup.ready();
+            }).thenApply(language -> {
+                if(measure)
+                    heap[1] = HeapUsage.retained();
+                return language;
+            });
+
+            entry.loading = started;
+            if(measure)
+                previous = started;
+            //May complete at once and clear entry.loading if the load failed.
+            started.whenComplete((language, ex) -> loaded(entry, started, ex, Math.max(0, heap[1] - heap[0]), System.nanoTime() - start[0]));
+            loading = started;
+        }
+
+        return loading;
+    }
+
+    /**
+     * @return the language constructed to read its configuration, or a new one
+     */
+    private static Language construct(Entry entry) {
+        Language language;
+        synchronized (entry) {
+            language = entry.constructed;
+            entry.constructed = null;
+        }
+
+        if(language == null)
+            language = entry.factory.get();
+
+        entry.configuration = configurationOf(language);
+        return language;
+    }
+
+    private static PipelinesConfiguration configurationOf(Language language) {
+        return language.hasBinding(PipelinesConfiguration.class) ? language.getInstance(PipelinesConfiguration.class) : null;
+    }
+
+    private void loaded(Entry entry, CompletableFuture<Language> loading, Throwable ex, long bytes, long nanos) {
+        synchronized (this) {
+            if(entry.loading != loading)
+                return;
+
+            if(ex != null) {
+                //Allow a new attempt on next use.
+                entry.loading = null;
+                entry.warmup = null;
+                entry.failure = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                logger.error("Failed to load language " + entry.lang, ex);
+                return;
+            }
+
+            entry.failure = null;
+
+            entry.bytes = bytes;
+            loads.increment();
+            if(budget != Long.MAX_VALUE)
+                logger.info("Loaded language " + entry.lang + ", approx. " + (entry.bytes >> 20) + " MiB in " + (nanos / 1000000) + " ms");
+            else
+                logger.info("Loaded language " + entry.lang + " in " + (nanos / 1000000) + " ms");
+        }
+
+        Listener listener = this.listener;
+        if(listener != null)
+            listener.onLoad(entry.lang, entry.bytes, nanos);
+
+        evict(entry);
+    }
+
+    private void evict(Entry keep) {
+        while(true) {
+            Entry victim = null;
+            Language released;
+            long evicted;
+            synchronized (this) {
+                long total = 0;
+                for (Entry entry : entries.values()) {
+                    if(isLoaded(entry)) {
+                        total += entry.bytes;
+                        if(entry != keep && (victim == null || entry.lastUse < victim.lastUse))
+                            victim = entry;
+                    }
+                }
+
+                if(total <= budget || victim == null)
+                    return;
+
+                evicted = victim.bytes;
+                released = victim.warmup.language();
+                victim.loading = null;
+                victim.warmup = null;
+                victim.bytes = 0;
+                evictions.increment();
+                logger.info("Unloaded language " + victim.lang + ", approx. " + (evicted >> 20) + " MiB");
+            }
+
+            //Tools held by the plans on other threads would otherwise keep the models reachable.
+            if(released.hasBinding(PipelinesConfiguration.class))
+                released.getInstance(Pipelines.class).release();
+
+            Listener listener = this.listener;
+            if(listener != null)
+                listener.onEvict(victim.lang, evicted);
+        }
+    }
+
+    private static boolean isLoaded(Entry entry) {
+        CompletableFuture<Language> loading = entry.loading;
+        return loading != null && loading.isDone() && !loading.isCompletedExceptionally();
+    }
+
+    /**
+     * @return the error of the last attempt to load a language, null if it succeeded or has not been made
+     */
+    public synchronized Throwable failure(String lang) {
+        Entry entry = entries.get(lang);
+        return entry != null ? entry.failure : null;
+    }
+
+    /**
+     * @return languages whose last load failed, they are attempted again on next use
+     */
+    public synchronized Set<String> unavailable() {
+        LinkedHashSet<String> unavailable = new LinkedHashSet<>();
+        for (Entry entry : entries.values()) {
+            if(entry.failure != null)
+                unavailable.add(entry.lang);
+        }
+        return Collections.unmodifiableSet(unavailable);
+    }
+
+    public synchronized boolean isLoaded(String lang) {
+        Entry entry = entries.get(lang);
+        return entry != null && isLoaded(entry);
+    }
+
+    /**
+     * @return approximate size of all loaded languages
+     */
+    public synchronized long residentBytes() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            if(isLoaded(entry))
+                total += entry.bytes;
+        }
+        return total;
+    }
+
+    /**
+     * @return approximate size of a language, 0 if it is not loaded or the budget is unbounded
+     */
+    public synchronized long residentBytes(String lang) {
+        Entry entry = entries.get(lang);
+        return entry != null && isLoaded(entry) ? entry.bytes : 0;
+    }
+
+    /**
+     * Get the pipelines of a language without loading its models. A language that has not been loaded is
+     * constructed, and the same instance is used when it is loaded.
+     * @return the configuration or null if the language is not registered or has no pipelines
+     */
+    public PipelinesConfiguration configuration(String lang) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(lang);
+        }
+
+        if(entry == null)
+            return null;
+
+        synchronized (entry) {
+            if(entry.configuration == null) {
+                Language language = entry.factory.get();
+                entry.configuration = configurationOf(language);
+                entry.constructed = language;
+            }
+            return entry.configuration;
+        }
+    }
+
+    public long budget() {
+        return budget;
+    }
+
+    public long loads() {
+        return loads.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+}
@@ -0,0 +1,311 @@
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.lth.cs.nlp.langforia.kernel.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.DocumentFactory;
+import se.lth.cs.docforia.LayerRef;
+import se.lth.cs.docforia.memstore.MemoryDocument;
+
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Content-addressed cache of annotated documents.
+ *
+ * Entries are serialized documents keyed by a SHA-256 hash of language, pipeline id, pipeline fingerprint,
+ * document factory and text. The fingerprint includes the bound properties of the language, so differently
+ * configured pipelines do not share entries.
+ * The memory tier is an LRU bounded by the total number of bytes, the optional disk tier is unbounded and
+ * survives restarts. Failures of the disk tier are logged and treated as misses, an entry that cannot
+ * be read back as a document is removed.
+ */
+public class AnnotationCache {
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationCache.class);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long maxMemoryBytes;
+    private final File directory;
+    private final LinkedHashMap<String,byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes = 0;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+
+    /**
+     * Memory only cache
+     * @param maxMemoryBytes maximum total size of cached documents in memory
+     */
+    public AnnotationCache(long maxMemoryBytes) {
+        this(maxMemoryBytes, null);
+    }
+
+    /**
+     * @param maxMemoryBytes maximum total size of cached documents in memory
+     * @param directory      directory of the disk tier, null to disable it
+     */
+    public AnnotationCache(long maxMemoryBytes, File directory) {
+        if(maxMemoryBytes < 0)
+            throw new IllegalArgumentException("maxMemoryBytes must not be negative");
+
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+
+        if(directory != null && !directory.isDirectory() && !directory.mkdirs())
+            throw new IllegalArgumentException("Could not create cache directory " + directory.getAbsolutePath());
+    }
+
+    /**
+     * @return true if the document has no annotations and no properties, only those are cached since the key is
+     *         computed from the text.
+     */
+    public static boolean isCacheable(Document doc) {
+        if(!(doc instanceof MemoryDocument))
+            return false;
+
+        if(doc.store().properties().iterator().hasNext())
+            return false;
+
+        for (LayerRef layer : doc.engine().nodeLayerRefs()) {
+            if(doc.engine().nodes(layer.getLayer(), layer.getVariant()).iterator().hasNext())
+                return false;
+        }
+
+        for (LayerRef layer : doc.engine().edgeLayerRefs()) {
+            if(doc.engine().edges(layer.getLayer(), layer.getVariant()).iterator().hasNext())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compute the key of a document
+     * @param fingerprint identifies the tools and models of the pipeline
+     * @param factory     document factory of the language, tools may depend on the document implementation
+     */
+    public static String key(String lang, String pipeline, String fingerprint, DocumentFactory factory, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[] {lang, pipeline, fingerprint, factory.getClass().getName()}) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte)0);
+            }
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+
+            byte[] hash = digest.digest();
+            char[] hex = new char[hash.length*2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[i*2] = HEX[(hash[i] >> 4) & 0xF];
+                hex[i*2+1] = HEX[hash[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error(e);
+        }
+    }
+
+    /**
+     * Annotate a cacheable document, see {@link #isCacheable(Document)}.
+     * @param annotator annotates doc on a miss, the result is stored under the key
+     * @return doc on a miss, on a hit the cached document with the id of doc. Since doc has neither
+     *         annotations nor properties, the two only differ in identity.
+     */
+    public Document apply(String key, Document doc, Consumer<Document> annotator) {
+        byte[] data = get(key);
+        if(data != null) {
+            Document cached;
+            try {
+                cached = MemoryDocument.fromBytes(data);
+            } catch (RuntimeException | IOError e) {
+                //Corrupt or truncated entry, annotate again and replace it
+                logger.warn("Failed to read cached document " + key + ", removing it", e);
+                remove(key);
+                cached = null;
+            }
+
+            if(cached != null) {
+                cached.setId(doc.id());
+                return cached;
+            }
+        }
+
+        annotator.accept(doc);
+        put(key, doc.toBytes());
+        return doc;
+    }
+
+    /**
+     * @return serialized document or null if it is not cached
+     */
+    public byte[] get(String key) {
+        byte[] data;
+        synchronized (memory) {
+            data = memory.get(key);
+        }
+
+        if(data != null) {
+            memoryHits.increment();
+            return data;
+        }
+
+        if(directory != null) {
+            Path path = path(key);
+            if(Files.exists(path)) {
+                try {
+                    data = Files.readAllBytes(path);
+                    diskHits.increment();
+                    putMemory(key, data);
+                    return data;
+                } catch (IOException e) {
+                    logger.warn("Failed to read cached document " + path, e);
+                }
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    public void put(String key, byte[] data) {
+        puts.increment();
+        putMemory(key, data);
+
+        if(directory != null) {
+            Path path = path(key);
+            try {
+                Files.createDirectories(path.getParent());
+                Path tmp = Files.createTempFile(path.getParent(), key, ".tmp");
+                Files.write(tmp, data);
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                logger.warn("Failed to write cached document " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Remove an entry from both tiers
+     */
+    public void remove(String key) {
+        synchronized (memory) {
+            byte[] previous = memory.remove(key);
+            if(previous != null)
+                memoryBytes -= previous.length;
+        }
+
+        if(directory != null) {
+            Path path = path(key);
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.warn("Failed to remove cached document " + path, e);
+            }
+        }
+    }
+
+    private void putMemory(String key, byte[] data) {
+        if(data.length > maxMemoryBytes)
+            return;
+
+        synchronized (memory) {
+            byte[] previous = memory.put(key, data);
+            if(previous != null)
+                memoryBytes -= previous.length;
+
+            memoryBytes += data.length;
+
+            Iterator<Map.Entry<String,byte[]>> iter = memory.entrySet().iterator();
+            while(memoryBytes > maxMemoryBytes && iter.hasNext()) {
+                memoryBytes -= iter.next().getValue().length;
+                iter.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private Path path(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key + ".bin").toPath();
+    }
+
+    /** Remove all entries from the memory tier */
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+    }
+
+    public long hits() {
+        return memoryHits.sum() + diskHits.sum();
+    }
+
+    public long memoryHits() {
+        return memoryHits.sum();
+    }
+
+    public long diskHits() {
+        return diskHits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** Number of entries evicted from the memory tier */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public long puts() {
+        return puts.sum();
+    }
+
+    public long memoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    public int memoryEntries() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits() + " (memory=" + memoryHits() + ", disk=" + diskHits() + ") misses=" + misses()
+                + " evictions=" + evictions() + " entries=" + memoryEntries() + " bytes=" + memoryBytes();
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.lth.cs.nlp.langforia.kernel.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Heap retained by reachable objects, as reported by the JVM after a full collection.
+ */
+public final class HeapUsage {
+    private static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private HeapUsage() {
+    }
+
+    /**
+     * Collect garbage and measure the used heap, this is slow and should only be used around model loading.
+     * @return bytes of heap in use
+     */
+    public static long retained() {
+        long used = Long.MAX_VALUE;
+        //One collection may leave objects behind that are only reclaimed by the next, e.g. after finalization.
+        for (int i = 0; i < 2; i++) {
+            memory.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
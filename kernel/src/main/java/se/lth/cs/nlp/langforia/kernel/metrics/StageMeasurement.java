@@ -0,0 +1,170 @@
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.lth.cs.nlp.langforia.kernel.metrics;
+
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.graph.text.Sentence;
+import se.lth.cs.docforia.graph.text.Token;
+import se.lth.cs.nlp.langforia.kernel.structure.DocumentLayers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Cost of applying one tool to one document.
+ *
+ * CPU time and allocated bytes are -1 when the JVM does not support measuring them. Token and sentence
+ * counts are -1 when they are not recorded, i.e. when other stages may run on the document at the same time.
+ */
+public class StageMeasurement {
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean cpuTime = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+
+    private final String language;
+    private final String pipeline;
+    private final Class<?> tool;
+    private final int documentLength;
+
+    private long wallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private int tokensBefore = -1;
+    private int tokensAfter = -1;
+    private int sentencesBefore = -1;
+    private int sentencesAfter = -1;
+    private boolean counted;
+    private boolean failed;
+
+    private StageMeasurement(String language, String pipeline, Class<?> tool, Document doc) {
+        this.language = language;
+        this.pipeline = pipeline;
+        this.tool = tool;
+        this.documentLength = doc.length();
+    }
+
+    /**
+     * Start measuring a stage on the current thread
+     */
+    public static StageMeasurement start(String language, String pipeline, Class<?> tool, Document doc) {
+        return start(language, pipeline, tool, doc, true);
+    }
+
+    /**
+     * Start measuring a stage on the current thread
+     * @param count record token and sentence counts, only meaningful when no other stage runs on the document
+     */
+    public static StageMeasurement start(String language, String pipeline, Class<?> tool, Document doc, boolean count) {
+        StageMeasurement measurement = new StageMeasurement(language, pipeline, tool, doc);
+        measurement.counted = count;
+        if(count) {
+            measurement.tokensBefore = tokens(doc);
+            measurement.sentencesBefore = sentences(doc);
+        }
+        measurement.allocatedBytes = Allocations.currentThread();
+        measurement.cpuNanos = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+        measurement.wallNanos = System.nanoTime();
+        return measurement;
+    }
+
+    /**
+     * Stop measuring, must be called on the thread that called start.
+     */
+    public StageMeasurement stop(Document doc, boolean failed) {
+        wallNanos = System.nanoTime() - wallNanos;
+        cpuNanos = cpuTime ? threads.getCurrentThreadCpuTime() - cpuNanos : -1;
+        allocatedBytes = Allocations.isSupported() ? Allocations.currentThread() - allocatedBytes : -1;
+        if(counted) {
+            tokensAfter = tokens(doc);
+            sentencesAfter = sentences(doc);
+        }
+        this.failed = failed;
+        return this;
+    }
+
+    private static int tokens(Document doc) {
+        return DocumentLayers.size(doc, Token.class);
+    }
+
+    private static int sentences(Document doc) {
+        return DocumentLayers.size(doc, Sentence.class);
+    }
+
+    public String language() {
+        return language;
+    }
+
+    public String pipeline() {
+        return pipeline;
+    }
+
+    public Class<?> tool() {
+        return tool;
+    }
+
+    public int documentLength() {
+        return documentLength;
+    }
+
+    public long wallNanos() {
+        return wallNanos;
+    }
+
+    public long cpuNanos() {
+        return cpuNanos;
+    }
+
+    public long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public int tokensBefore() {
+        return tokensBefore;
+    }
+
+    public int tokensAfter() {
+        return tokensAfter;
+    }
+
+    public int sentencesBefore() {
+        return sentencesBefore;
+    }
+
+    public int sentencesAfter() {
+        return sentencesAfter;
+    }
+
+    /**
+     * @return true if token and sentence counts were recorded
+     */
+    public boolean counted() {
+        return counted;
+    }
+
+    public boolean failed() {
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + language + "/" + pipeline + "] " + tool.getSimpleName()
+                + " wall=" + wallNanos + "ns cpu=" + cpuNanos + "ns alloc=" + allocatedBytes + "b"
+                + " length=" + documentLength
+                + (counted ? " tokens=" + tokensBefore + "->" + tokensAfter
+                           + " sentences=" + sentencesBefore + "->" + sentencesAfter : "")
+                + (failed ? " FAILED" : "");
+    }
+}
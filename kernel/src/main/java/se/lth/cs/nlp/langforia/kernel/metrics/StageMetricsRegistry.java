@@ -0,0 +1,236 @@
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.lth.cs.nlp.langforia.kernel.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates stage measurements into counters and histograms keyed by language, pipeline and tool.
+ *
+ * Recording is lock-free, histograms use power of two buckets.
+ */
+public class StageMetricsRegistry implements StageListener {
+
+    public static final class Key {
+        private final String language;
+        private final String pipeline;
+        private final Class<?> tool;
+
+        public Key(String language, String pipeline, Class<?> tool) {
+            this.language = language;
+            this.pipeline = pipeline;
+            this.tool = tool;
+        }
+
+        public String language() {
+            return language;
+        }
+
+        public String pipeline() {
+            return pipeline;
+        }
+
+        public Class<?> tool() {
+            return tool;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+            return language.equals(key.language) && pipeline.equals(key.pipeline) && tool.equals(key.tool);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = language.hashCode();
+            result = 31 * result + pipeline.hashCode();
+            result = 31 * result + tool.hashCode();
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return language + "/" + pipeline + "/" + tool.getName();
+        }
+    }
+
+    public static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+        /** Bucket i holds values in [2^(i-1), 2^i), bucket 0 holds values below 1 */
+        public void record(long value) {
+            buckets.incrementAndGet(value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value));
+        }
+
+        public long count(int bucket) {
+            return buckets.get(bucket);
+        }
+
+        public long count() {
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                total += buckets.get(i);
+            }
+            return total;
+        }
+
+        /**
+         * @return upper bound of the bucket containing the given quantile
+         */
+        public long quantile(double q) {
+            long total = count();
+            if(total == 0)
+                return 0;
+
+            long target = (long)Math.ceil(q * total);
+            long acc = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                acc += buckets.get(i);
+                if(acc >= target && acc > 0)
+                    return i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : 1L << i);
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    public static final class Statistics {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder wallNanos = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final LongAdder characters = new LongAdder();
+        private final LongAdder tokensAdded = new LongAdder();
+        private final LongAdder sentencesAdded = new LongAdder();
+
+        private final Histogram wallHistogram = new Histogram();
+        private final Histogram cpuHistogram = new Histogram();
+        private final Histogram allocationHistogram = new Histogram();
+
+        void record(StageMeasurement m) {
+            count.increment();
+            if(m.failed())
+                failures.increment();
+
+            wallNanos.add(m.wallNanos());
+            wallHistogram.record(m.wallNanos());
+
+            if(m.cpuNanos() >= 0) {
+                cpuNanos.add(m.cpuNanos());
+                cpuHistogram.record(m.cpuNanos());
+            }
+
+            if(m.allocatedBytes() >= 0) {
+                allocatedBytes.add(m.allocatedBytes());
+                allocationHistogram.record(m.allocatedBytes());
+            }
+
+            characters.add(m.documentLength());
+            if(m.counted()) {
+                tokensAdded.add(m.tokensAfter() - m.tokensBefore());
+                sentencesAdded.add(m.sentencesAfter() - m.sentencesBefore());
+            }
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long failures() {
+            return failures.sum();
+        }
+
+        public long wallNanos() {
+            return wallNanos.sum();
+        }
+
+        public long cpuNanos() {
+            return cpuNanos.sum();
+        }
+
+        public long allocatedBytes() {
+            return allocatedBytes.sum();
+        }
+
+        public long characters() {
+            return characters.sum();
+        }
+
+        public long tokensAdded() {
+            return tokensAdded.sum();
+        }
+
+        public long sentencesAdded() {
+            return sentencesAdded.sum();
+        }
+
+        /**
+         * @return characters processed per second of wall time
+         */
+        public double throughput() {
+            long wall = wallNanos();
+            return wall == 0 ? 0.0 : characters() * 1e9 / wall;
+        }
+
+        public Histogram wallHistogram() {
+            return wallHistogram;
+        }
+
+        public Histogram cpuHistogram() {
+            return cpuHistogram;
+        }
+
+        public Histogram allocationHistogram() {
+            return allocationHistogram;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count() + " failures=" + failures()
+                    + " wall=" + wallNanos() + "ns (p50<=" + wallHistogram.quantile(0.5) + "ns, p99<=" + wallHistogram.quantile(0.99) + "ns)"
+                    + " cpu=" + cpuNanos() + "ns alloc=" + allocatedBytes() + "b"
+                    + " chars/s=" + (long)throughput();
+        }
+    }
+
+    private final ConcurrentHashMap<Key,Statistics> statistics = new ConcurrentHashMap<>();
+
+    @Override
+    public void onStage(StageMeasurement measurement) {
+        statistics.computeIfAbsent(new Key(measurement.language(), measurement.pipeline(), measurement.tool()), k -> new Statistics())
+                  .record(measurement);
+    }
+
+    public Statistics get(String language, String pipeline, Class<?> tool) {
+        return statistics.get(new Key(language, pipeline, tool));
+    }
+
+    public Map<Key,Statistics> statistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+}
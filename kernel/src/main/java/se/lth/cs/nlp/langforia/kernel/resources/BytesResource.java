@@ -17,6 +17,9 @@ package se.lth.cs.nlp.langforia.kernel.resources;
  */
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
 
 public class BytesResource extends Resource {
 
@@ -67,6 +70,16 @@ public class BytesResource extends Resource {
         return new ByteArrayInputStream(data);
     }
 
+    @Override
+    public boolean supportsMapping() {
+        return true;
+    }
+
+    @Override
+    public List<ByteBuffer> mappedSegments() {
+        return Collections.singletonList(ByteBuffer.wrap(data).asReadOnlyBuffer());
+    }
+
     @Override
     public Reader textRead() {
         try {
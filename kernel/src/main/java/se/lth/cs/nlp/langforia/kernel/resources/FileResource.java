@@ -17,6 +17,8 @@ package se.lth.cs.nlp.langforia.kernel.resources;
  */
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 public class FileResource extends Resource {
 
@@ -100,4 +102,23 @@ public class FileResource extends Resource {
     public File file() {
         return _fspath;
     }
+
+    @Override
+    public Resource sibling(String name) {
+        File sibling = new File(_fspath.getAbsoluteFile().getParentFile(), name);
+        return sibling.exists() ? new FileResource(sibling) : null;
+    }
+
+    @Override
+    public boolean supportsMapping() {
+        return true;
+    }
+
+    @Override
+    public List<ByteBuffer> mappedSegments() {
+        if(!isReadable())
+            throw new IOError(new IOException("Cannot read this file: " + _fspath.getAbsolutePath()));
+
+        return map(_fspath);
+    }
 }
@@ -17,10 +17,51 @@ package se.lth.cs.nlp.langforia.kernel.resources;
  */
 
 import java.io.*;
+import java.net.JarURLConnection;
+import java.nio.ByteBuffer;
+import java.net.URL;
+import java.net.URISyntaxException;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
+/**
+ * Resource on the classpath.
+ *
+ * {@link #file()} extracts the resource into a persistent cache directory of the current user, set by the system
+ * property {@value #CACHE_PROPERTY} and defaulting to langforia in $XDG_CACHE_HOME or ~/.cache. Extracted files
+ * are keyed by the resource path and the CRC, size and time of the jar entry, or the modification time and size of
+ * a plain file, so later starts reuse them and a changed resource is extracted again.
+ *
+ * Models are deserialized from extracted files, so the cache must not be writable by anyone else: directories are
+ * created readable by the owner only, an existing directory must be owned by the current user and not writable
+ * by others, and an extracted file is only reused if it is owned by the current user and matches the size and
+ * CRC of the resource.
+ */
 public class JarResource extends Resource {
+    public static final String CACHE_PROPERTY = "langforia.resource.cache";
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
     private String resource;
+    private volatile File extracted;
 
     public JarResource(String name, String resource) {
         super(name);
@@ -42,37 +83,202 @@ public class JarResource extends Resource {
         return true;
     }
 
+    public static File cacheDirectory() {
+        String dir = System.getProperty(CACHE_PROPERTY);
+        if(dir != null)
+            return new File(dir);
+
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        File base = xdg != null && !xdg.isEmpty() ? new File(xdg) : new File(System.getProperty("user.home"), ".cache");
+        return new File(base, "langforia");
+    }
+
+    /**
+     * Compute the cache key of the resource, reading the content only if there is no cheaper identity.
+     */
+    private String cacheKey(URL url, URLConnection connection, JarEntry entry) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error(e);
+        }
+
+        digest.update(resource.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte)0);
+
+        if(entry != null && entry.getCrc() != -1) {
+            digest.update((entry.getCrc() + ":" + entry.getSize() + ":" + entry.getTime()).getBytes(StandardCharsets.UTF_8));
+        }
+        else if(url.getProtocol().equals("file")) {
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+            digest.update((file.lastModified() + ":" + file.length()).getBytes(StandardCharsets.UTF_8));
+        }
+        else {
+            try(InputStream stream = connection.getInputStream()) {
+                byte[] buffer = new byte[256*1024];
+                int read;
+                while((read = stream.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+
+        byte[] hash = digest.digest();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            sb.append(String.format("%02x", hash[i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return size and CRC-32 of the stream, which is closed
+     */
+    private static long[] checksum(InputStream stream) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try(InputStream in = new CheckedInputStream(stream, crc)) {
+            byte[] buffer = new byte[256*1024];
+            int read;
+            while((read = in.read(buffer)) != -1) {
+                size += read;
+            }
+        }
+        return new long[] {size, crc.getValue()};
+    }
+
+    private static UserPrincipal currentUser() throws IOException {
+        return FileSystems.getDefault().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+    }
+
+    /**
+     * Create a directory accessible by the current user only, or check that an existing one cannot be
+     * written by anyone else.
+     */
+    private static void secureDirectory(Path dir, UserPrincipal user) throws IOException {
+        if(!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            Path parent = dir.toAbsolutePath().getParent();
+            if(parent != null)
+                Files.createDirectories(parent);
+
+            try {
+                if(POSIX)
+                    Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+                else
+                    Files.createDirectory(dir);
+            } catch (FileAlreadyExistsException e) {
+                //Created concurrently, checked below.
+            }
+        }
+
+        if(!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS))
+            throw new IOException("Resource cache " + dir + " is not a directory");
+
+        if(!Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS).equals(user))
+            throw new IOException("Resource cache " + dir + " is not owned by " + user.getName());
+
+        if(POSIX) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS);
+            if(permissions.contains(PosixFilePermission.GROUP_WRITE) || permissions.contains(PosixFilePermission.OTHERS_WRITE))
+                throw new IOException("Resource cache " + dir + " is writable by other users");
+        }
+    }
+
+    /**
+     * @return true if the file is a regular file of the current user with the expected size and CRC-32
+     */
+    private static boolean matches(Path file, UserPrincipal user, long[] expected) throws IOException {
+        if(!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)
+                || !Files.getOwner(file, LinkOption.NOFOLLOW_LINKS).equals(user)
+                || Files.size(file) != expected[0])
+            return false;
+
+        long[] actual = checksum(Files.newInputStream(file, LinkOption.NOFOLLOW_LINKS));
+        return actual[0] == expected[0] && actual[1] == expected[1];
+    }
+
     @Override
     public File file() {
+        File file = extracted;
+        if(file != null && file.exists())
+            return file;
+
         try {
-            InputStream stream = getClass().getClassLoader().getResourceAsStream(resource);
-            if(stream == null)
+            URL url = getClass().getClassLoader().getResource(resource);
+            if(url == null)
                 throw new IOError(new IOException("Resource not found in jar: " + resource));
 
-            File temp = Files.createTempDirectory("temp-res").toFile();
-            temp.deleteOnExit();
+            URLConnection connection = url.openConnection();
+            JarEntry entry = connection instanceof JarURLConnection ? ((JarURLConnection) connection).getJarEntry() : null;
 
-            File tempfile = new File(temp, name);
-            FileOutputStream output = new FileOutputStream(tempfile);
+            UserPrincipal user = currentUser();
+            Path cache = cacheDirectory().toPath();
+            secureDirectory(cache, user);
 
-            byte[] buffer = new byte[256*1024];
-            int read = 0;
-            while(read != -1) {
-                read = stream.read(buffer);
-                if(read > 0)
-                    output.write(buffer, 0, read);
-            }
+            Path directory = cache.resolve(cacheKey(url, connection, entry));
+            secureDirectory(directory, user);
 
-            output.flush();
-            output.close();
-            stream.close();
+            long[] expected = entry != null && entry.getCrc() != -1 && entry.getSize() != -1
+                    ? new long[] {entry.getSize(), entry.getCrc()}
+                    : checksum(url.openStream());
 
-            return tempfile;
+            Path target = directory.resolve(name);
+            if(!matches(target, user, expected)) {
+                //Extract next to the target and rename, other JVMs only ever see complete files.
+                Path temp = Files.createTempFile(directory, name, ".tmp");
+                try {
+                    long[] actual;
+                    CRC32 crc = new CRC32();
+                    try(InputStream stream = new CheckedInputStream(url.openStream(), crc)) {
+                        actual = new long[] {Files.copy(stream, temp, StandardCopyOption.REPLACE_EXISTING), crc.getValue()};
+                    }
+
+                    if(actual[0] != expected[0] || actual[1] != expected[1])
+                        throw new IOException("Extracted " + resource + " does not match its size and CRC");
+
+                    try {
+                        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException | FileAlreadyExistsException e) {
+                        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+
+            extracted = target.toFile();
+            return extracted;
         } catch (IOException e) {
             throw new IOError(e);
         }
     }
 
+    @Override
+    public Resource sibling(String name) {
+        int slash = resource.lastIndexOf('/');
+        String path = slash == -1 ? name : resource.substring(0, slash+1) + name;
+        return getClass().getClassLoader().getResource(path) != null ? new JarResource(name, path) : null;
+    }
+
+    @Override
+    public boolean supportsMapping() {
+        return true;
+    }
+
+    /**
+     * Maps the file in the extraction cache, see {@link #file()}.
+     */
+    @Override
+    public List<ByteBuffer> mappedSegments() {
+        return map(file());
+    }
+
     @Override
     public InputStream binaryRead() {
         InputStream is = getClass().getClassLoader().getResourceAsStream(resource);
@@ -17,8 +17,17 @@ package se.lth.cs.nlp.langforia.kernel.resources;
  */
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public abstract class Resource {
+    /** Size of the segments returned by {@link #mappedSegments()}, the largest buffer that can be mapped */
+    public static final long SEGMENT_SIZE = Integer.MAX_VALUE;
+
     protected final String name;
 
     public Resource(String name) {
@@ -68,4 +77,71 @@ public abstract class Resource {
     public boolean isVirtual() {
         return true;
     }
+
+    /**
+     * Find a resource stored next to this one, e.g. an alternative format of a model.
+     * @param name file name of the other resource
+     * @return the resource or null if it does not exist or this resource has no location
+     */
+    public Resource sibling(String name) {
+        return null;
+    }
+
+    /**
+     * @return true if {@link #mappedSegments()} maps the data instead of copying it to the heap
+     */
+    public boolean supportsMapping() {
+        return false;
+    }
+
+    /**
+     * Read-only view of the whole resource, memory mapped when supported.
+     * @throws IOError if the resource is larger than {@link #SEGMENT_SIZE} bytes, use {@link #mappedSegments()}
+     */
+    public ByteBuffer mappedRead() {
+        List<ByteBuffer> segments = mappedSegments();
+        if(segments.size() != 1)
+            throw new IOError(new IOException("Resource " + name + " is too large to map as a single buffer, use mappedSegments()"));
+
+        return segments.get(0);
+    }
+
+    /**
+     * Read-only views of consecutive segments of the resource, every segment but the last is
+     * {@link #SEGMENT_SIZE} bytes. There is always at least one segment.
+     * The default implementation copies the data into the heap.
+     */
+    public List<ByteBuffer> mappedSegments() {
+        try(InputStream input = binaryRead()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256*1024];
+            int read;
+            while((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return Collections.singletonList(ByteBuffer.wrap(output.toByteArray()).asReadOnlyBuffer());
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+    }
+
+    /**
+     * Memory map a file in segments of {@link #SEGMENT_SIZE} bytes
+     */
+    protected static List<ByteBuffer> map(File file) {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ArrayList<ByteBuffer> segments = new ArrayList<>();
+            long position = 0;
+            do {
+                long length = Math.min(SEGMENT_SIZE, size - position);
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                position += length;
+            } while(position < size);
+
+            return Collections.unmodifiableList(segments);
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+    }
 }
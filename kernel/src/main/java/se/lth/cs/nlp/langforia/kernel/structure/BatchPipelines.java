@@ -0,0 +1,169 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import com.google.inject.Inject;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.nlp.langforia.kernel.LanguageCode;
+import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaRuntimeException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Applies a pipeline to many documents at once using a bounded pool of workers.
+ *
+ * A failing document does not abort the batch, its exception is reported in the {@link Result}.
+ */
+public class BatchPipelines {
+
+    private final Pipelines pipelines;
+    private final String lang;
+
+    @Inject
+    public BatchPipelines(@LanguageCode String lang, Pipelines pipelines) {
+        this.lang = lang;
+        this.pipelines = pipelines;
+    }
+
+    public static class Result {
+        private final int index;
+        private final Document document;
+        private final Throwable error;
+
+        public Result(int index, Document document, Throwable error) {
+            this.index = index;
+            this.document = document;
+            this.error = error;
+        }
+
+        /** Position of the document in the input */
+        public int index() {
+            return index;
+        }
+
+        public Document document() {
+            return document;
+        }
+
+        /** The failure, or null if the pipeline completed */
+        public Throwable error() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Apply pipeline to all documents, results are returned in input order.
+     */
+    public List<Result> apply(String pipeline, Iterable<Document> docs, int parallelism) {
+        ArrayList<Result> results = new ArrayList<>();
+        apply(pipeline, docs, parallelism, true, results::add);
+        return results;
+    }
+
+    /**
+     * Apply pipeline to all documents
+     * @param pipeline    pipeline id
+     * @param docs        documents, consumed lazily
+     * @param parallelism number of worker threads
+     * @param ordered     true if results should be given to the consumer in input order
+     * @param consumer    receives results, always called from the calling thread
+     */
+    public void apply(String pipeline, Iterable<Document> docs, int parallelism, boolean ordered, Consumer<Result> consumer) {
+        if(parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be larger than 0");
+
+        if(!pipelines.pipelines().contains(pipeline))
+            throw new IllegalArgumentException("Pipeline '" + pipeline + "' does not exist for language " + lang);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new BatchThreadFactory(lang));
+        ExecutorCompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+
+        //Bounds the number of documents held by the batch, including those waiting to be emitted in order.
+        final int maxInFlight = parallelism * 2;
+
+        try {
+            Iterator<Document> iter = docs.iterator();
+            TreeMap<Integer,Result> pending = new TreeMap<>();
+
+            int submitted = 0;
+            int emitted = 0;
+
+            while(iter.hasNext() || emitted < submitted) {
+                while(iter.hasNext() && submitted - emitted < maxInFlight) {
+                    final Document doc = iter.next();
+                    final int index = submitted++;
+                    completion.submit(() -> process(pipeline, index, doc));
+                }
+
+                Result result = completion.take().get();
+                if(!ordered) {
+                    consumer.accept(result);
+                    emitted++;
+                }
+                else {
+                    pending.put(result.index(), result);
+                    while(!pending.isEmpty() && pending.firstKey() == emitted) {
+                        consumer.accept(pending.pollFirstEntry().getValue());
+                        emitted++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LangforiaRuntimeException(lang, "Batch was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new LangforiaRuntimeException(lang, "Batch worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result process(String pipeline, int index, Document doc) {
+        try {
+            return new Result(index, pipelines.apply(pipeline, doc), null);
+        } catch (Throwable e) {
+            //Errors as well, e.g. a StackOverflowError in one tool should only fail its document
+            return new Result(index, doc, e);
+        }
+    }
+
+    private static class BatchThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+        private final String lang;
+
+        public BatchThreadFactory(String lang) {
+            this.lang = lang;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "langforia-batch-" + lang + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.Edge;
+import se.lth.cs.docforia.LayerRef;
+import se.lth.cs.docforia.Node;
+
+import java.util.ArrayList;
+
+/**
+ * Layer lookups that do not change the document.
+ *
+ * {@code doc.store().nodeLayer(...)} creates a missing layer, which makes an inspected document differ
+ * from one that was not inspected. These helpers only look at layers that already exist.
+ */
+public final class DocumentLayers {
+    private DocumentLayers() {
+    }
+
+    /**
+     * @return true if the default variant of the node layer exists
+     */
+    public static boolean hasNodeLayer(Document doc, Class<?> layer) {
+        String name = Document.nodeLayer(layer);
+        for (LayerRef ref : doc.engine().nodeLayerRefs()) {
+            if(ref.getLayer().equals(name) && ref.getVariant() == null)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the default variant of the edge layer exists
+     */
+    public static boolean hasEdgeLayer(Document doc, Class<?> layer) {
+        String name = Document.edgeLayer(layer);
+        for (LayerRef ref : doc.engine().edgeLayerRefs()) {
+            if(ref.getLayer().equals(name) && ref.getVariant() == null)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove all nodes or edges of the default variant of a layer, removing a node also removes its edges.
+     */
+    @SuppressWarnings("unchecked")
+    public static void clear(Document doc, Class<?> layer) {
+        if(Node.class.isAssignableFrom(layer) && hasNodeLayer(doc, layer)) {
+            ArrayList<Node> nodes = new ArrayList<>();
+            for (Node node : doc.nodes((Class<Node>) layer)) {
+                nodes.add(node);
+            }
+            nodes.forEach(doc::remove);
+        }
+        else if(Edge.class.isAssignableFrom(layer) && hasEdgeLayer(doc, layer)) {
+            ArrayList<Edge> edges = new ArrayList<>();
+            for (Edge edge : doc.edges((Class<Edge>) layer)) {
+                edges.add(edge);
+            }
+            edges.forEach(doc::remove);
+        }
+    }
+
+    /**
+     * @return number of nodes in the default variant of the layer, 0 if it does not exist
+     */
+    public static int size(Document doc, Class<?> layer) {
+        return hasNodeLayer(doc, layer) ? doc.store().nodeLayer(Document.nodeLayer(layer)).size() : 0;
+    }
+}
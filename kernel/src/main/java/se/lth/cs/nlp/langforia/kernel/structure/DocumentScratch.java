@@ -0,0 +1,88 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import se.lth.cs.docforia.Document;
+
+import java.util.HashMap;
+
+/**
+ * Tool-private state of a document that is not bound to tokens, e.g. an intermediate result shared by
+ * several stages of the same tool.
+ *
+ * All values of a document are kept in one document tag, which is dropped when a pipeline has finished
+ * the document, see {@link PipelinePlan#finish(Document)}. Use {@link TokenScratch} for per-token state.
+ */
+public final class DocumentScratch {
+    /** Tag the values of a document are kept under */
+    public static final String TAG = "langforia.document-scratch";
+
+    private DocumentScratch() {
+    }
+
+    /**
+     * @param key name of the value, e.g. prefixed by the tool
+     * @return the value or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T get(Document doc, String key) {
+        synchronized (doc) {
+            if(!doc.hasTag(TAG))
+                return null;
+
+            HashMap<String,Object> values = doc.getTag(TAG);
+            return (T)values.get(key);
+        }
+    }
+
+    public static void put(Document doc, String key, Object value) {
+        synchronized (doc) {
+            HashMap<String,Object> values;
+            if(doc.hasTag(TAG)) {
+                values = doc.getTag(TAG);
+            } else {
+                values = new HashMap<>();
+                doc.putTag(TAG, values);
+            }
+            values.put(key, value);
+        }
+    }
+
+    /**
+     * Drop a value
+     */
+    public static void clear(Document doc, String key) {
+        synchronized (doc) {
+            if(doc.hasTag(TAG)) {
+                HashMap<String,Object> values = doc.getTag(TAG);
+                values.remove(key);
+                if(values.isEmpty())
+                    doc.removeTag(TAG);
+            }
+        }
+    }
+
+    /**
+     * Drop all values of a document
+     */
+    public static void clearAll(Document doc) {
+        synchronized (doc) {
+            if(doc.hasTag(TAG))
+                doc.removeTag(TAG);
+        }
+    }
+}
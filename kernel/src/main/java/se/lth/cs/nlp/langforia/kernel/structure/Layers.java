@@ -0,0 +1,34 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.lang.annotation.*;
+
+/**
+ * Declares the docforia layers a {@link LanguageTool} implementation reads and writes.
+ *
+ * Adding properties to existing nodes counts as writing that layer, and so does connecting
+ * edges to them. Tools without this annotation are scheduled as barriers.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Layers {
+    Class<?>[] reads() default {};
+    Class<?>[] writes() default {};
+}
@@ -0,0 +1,25 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Implemented by tools whose model is not a bound {@link se.lth.cs.nlp.langforia.kernel.resources.Resource},
+ * the returned id identifies the model in the provenance of a document.
+ */
+public interface ModelIdentity {
+    String modelId();
+}
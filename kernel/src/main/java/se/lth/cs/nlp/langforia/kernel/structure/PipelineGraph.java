@@ -0,0 +1,230 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import com.google.inject.Binding;
+import com.google.inject.Key;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.LinkedKeyBinding;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.Edge;
+import se.lth.cs.nlp.langforia.kernel.Language;
+import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaRuntimeException;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+
+/**
+ * Dependency graph of the stages in a pipeline, compiled from the {@link Layers} declared by the tools.
+ *
+ * A stage depends on every earlier stage it conflicts with: one of them writes a layer
+ * the other reads or writes. Stages without a declaration conflict with everything.
+ *
+ * Stages are run one after another by default. Docforia documents are not thread-safe and the layers
+ * cannot describe document properties or tags, running independent stages concurrently with
+ * {@link #executeConcurrent(Document, Executor, IntConsumer)} is therefore opt-in and only safe for tools
+ * known not to touch shared document state.
+ */
+public class PipelineGraph {
+    private final Class<? extends LanguageTool>[] stages;
+    private final Class<?>[] implementations;
+    private final Layers[] layers;
+    private final int[][] dependencies;
+    private final boolean sequential;
+
+    private PipelineGraph(Class<? extends LanguageTool>[] stages, Class<?>[] implementations, Layers[] layers) {
+        this.stages = stages;
+        this.implementations = implementations;
+        this.layers = layers;
+        this.dependencies = new int[stages.length][];
+
+        boolean chain = true;
+        for (int i = 0; i < stages.length; i++) {
+            int[] deps = new int[i];
+            int k = 0;
+            for (int j = 0; j < i; j++) {
+                if(conflicts(layers[j], layers[i]))
+                    deps[k++] = j;
+            }
+
+            dependencies[i] = Arrays.copyOf(deps, k);
+            if(i > 0 && (k == 0 || dependencies[i][k-1] != i-1))
+                chain = false;
+        }
+
+        this.sequential = chain;
+    }
+
+    private static boolean intersects(Class<?>[] a, Class<?>[] b) {
+        for (Class<?> x : a) {
+            for (Class<?> y : b) {
+                if(x == y)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean conflicts(Layers a, Layers b) {
+        if(a == null || b == null)
+            return true;
+
+        return intersects(a.writes(), b.writes())
+            || intersects(a.writes(), b.reads())
+            || intersects(a.reads(), b.writes());
+    }
+
+    /**
+     * Find the class that will be instantiated for a tool by following linked and instance bindings.
+     */
+    public static Class<?> implementationOf(Language language, Class<?> tool) {
+        Key<?> key = Key.get(tool);
+        for(int i = 0; i < 16; i++) {
+            Binding<?> binding = language.getBindingOrNull(key);
+            if(binding instanceof LinkedKeyBinding) {
+                key = ((LinkedKeyBinding<?>) binding).getLinkedKey();
+            }
+            else if(binding instanceof InstanceBinding) {
+                return ((InstanceBinding<?>) binding).getInstance().getClass();
+            }
+            else
+                break;
+        }
+
+        return key.getTypeLiteral().getRawType();
+    }
+
+    /**
+     * Graph of tools that are their own implementations
+     */
+    @SafeVarargs
+    static PipelineGraph of(Class<? extends LanguageTool>... tools) {
+        Layers[] layers = new Layers[tools.length];
+        for (int i = 0; i < tools.length; i++) {
+            layers[i] = tools[i].getAnnotation(Layers.class);
+        }
+
+        return new PipelineGraph(tools, tools, layers);
+    }
+
+    public static PipelineGraph compile(Language language, Class<? extends LanguageTool>[] stages) {
+        Class<?>[] implementations = new Class<?>[stages.length];
+        Layers[] layers = new Layers[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            implementations[i] = implementationOf(language, stages[i]);
+            layers[i] = implementations[i].getAnnotation(Layers.class);
+        }
+
+        return new PipelineGraph(stages, implementations, layers);
+    }
+
+    public int size() {
+        return stages.length;
+    }
+
+    public Class<? extends LanguageTool> stage(int i) {
+        return stages[i];
+    }
+
+    public Class<?> implementation(int i) {
+        return implementations[i];
+    }
+
+    public Layers layers(int i) {
+        return layers[i];
+    }
+
+    /**
+     * @return indices of the earlier stages that stage i must wait for
+     */
+    public int[] dependencies(int i) {
+        return dependencies[i].clone();
+    }
+
+    /**
+     * @return true if no two stages can run concurrently
+     */
+    public boolean isSequential() {
+        return sequential;
+    }
+
+    /**
+     * Run all stages one after another in pipeline order on the calling thread.
+     * @param runner applies stage i
+     */
+    public void execute(IntConsumer runner) {
+        for (int i = 0; i < stages.length; i++) {
+            runner.accept(i);
+        }
+    }
+
+    /**
+     * Run all stages on a document, independent stages are run concurrently on the executor.
+     * @param doc      the document, all layers written concurrently are created up front.
+     * @param executor executor for concurrent stages
+     * @param runner   applies stage i
+     */
+    public void executeConcurrent(Document doc, Executor executor, IntConsumer runner) {
+        if(sequential) {
+            execute(runner);
+            return;
+        }
+
+        // Layer creation is not thread-safe, make sure they exist before branching.
+        for (Layers layer : layers) {
+            if(layer == null)
+                continue;
+
+            for (Class<?> write : layer.writes()) {
+                if(Edge.class.isAssignableFrom(write))
+                    doc.store().edgeLayer(Document.edgeLayer(write));
+                else
+                    doc.store().nodeLayer(Document.nodeLayer(write));
+            }
+        }
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            final int stage = i;
+            int[] deps = dependencies[i];
+            if(deps.length == 0) {
+                futures[i] = CompletableFuture.runAsync(() -> runner.accept(stage), executor);
+            }
+            else {
+                CompletableFuture<?>[] waitFor = new CompletableFuture<?>[deps.length];
+                for (int k = 0; k < deps.length; k++) {
+                    waitFor[k] = futures[deps[k]];
+                }
+                futures[i] = CompletableFuture.allOf(waitFor).thenRunAsync(() -> runner.accept(stage), executor);
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            else if(e.getCause() instanceof Error)
+                throw (Error)e.getCause();
+            else
+                throw new LangforiaRuntimeException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import com.google.inject.Binding;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
+import com.google.inject.spi.InstanceBinding;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.nlp.langforia.kernel.Language;
+import se.lth.cs.nlp.langforia.kernel.Property;
+import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaRuntimeException;
+import se.lth.cs.nlp.langforia.kernel.metrics.StageListener;
+import se.lth.cs.nlp.langforia.kernel.metrics.StageMeasurement;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+
+/**
+ * Precompiled execution plan of a pipeline.
+ *
+ * Singleton tools are resolved once and shared, all other tools are created once per thread since
+ * their bindings make no promise about thread-safety. Applying the plan does not touch the injector.
+ */
+public class PipelinePlan {
+    /** Tag counting the plans and tool applications running on a document, see {@link #begin(Document)} */
+    public static final String RUNNING_TAG = "langforia.running";
+
+    /** Tool instance of one thread, kept reachable from the plan so that it can be released */
+    private static final class Slot {
+        private volatile LanguageTool tool;
+    }
+
+    private final String id;
+    private final PipelineGraph graph;
+    private final LanguageTool[] shared;
+    private final Provider<? extends LanguageTool>[] providers;
+    private final ThreadLocal<Slot>[] perThread;
+    private final Set<Slot> slots = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final String[] modelIds;
+    private final String fingerprint;
+
+    @SuppressWarnings("unchecked")
+    private PipelinePlan(String id, PipelineGraph graph, LanguageTool[] shared, Provider<? extends LanguageTool>[] providers, String[] modelIds, String properties) {
+        this.id = id;
+        this.graph = graph;
+        this.shared = shared;
+        this.providers = providers;
+        this.perThread = new ThreadLocal[graph.size()];
+        this.modelIds = modelIds;
+
+        for (int i = 0; i < graph.size(); i++) {
+            if(shared[i] == null) {
+                perThread[i] = ThreadLocal.withInitial(() -> {
+                    Slot slot = new Slot();
+                    slots.add(slot);
+                    return slot;
+                });
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < graph.size(); i++) {
+            sb.append(graph.implementation(i).getName()).append('@').append(modelIds[i]).append('|');
+        }
+        sb.append(properties);
+        this.fingerprint = sb.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static PipelinePlan compile(Language language, String id, Class<? extends LanguageTool>[] tools) {
+        PipelineGraph graph = PipelineGraph.compile(language, tools);
+        LanguageTool[] shared = new LanguageTool[graph.size()];
+        Provider<? extends LanguageTool>[] providers = new Provider[graph.size()];
+        String[] modelIds = new String[graph.size()];
+
+        for (int i = 0; i < graph.size(); i++) {
+            Binding<? extends LanguageTool> binding = language.getBinding(graph.stage(i));
+            providers[i] = binding.getProvider();
+            if(Scopes.isSingleton(binding))
+                shared[i] = providers[i].get();
+
+            //Only a tool reporting its own model id needs an instance, the others are found through the bindings.
+            LanguageTool instance = shared[i];
+            if(instance == null && ModelIdentity.class.isAssignableFrom(graph.implementation(i)))
+                instance = providers[i].get();
+
+            modelIds[i] = Provenance.modelId(language, graph.stage(i), instance);
+        }
+
+        return new PipelinePlan(id, graph, shared, providers, modelIds, properties(language.getAllBindings()));
+    }
+
+    /**
+     * @return the values bound with {@link Property}, sorted by name and type
+     */
+    static String properties(Map<Key<?>, Binding<?>> bindings) {
+        TreeMap<String,String> properties = new TreeMap<>();
+        for (Map.Entry<Key<?>, Binding<?>> entry : bindings.entrySet()) {
+            Key<?> key = entry.getKey();
+            if(key.getAnnotation() instanceof Property && entry.getValue() instanceof InstanceBinding) {
+                String name = ((Property) key.getAnnotation()).value() + ":" + key.getTypeLiteral();
+                properties.put(name, String.valueOf(((InstanceBinding<?>) entry.getValue()).getInstance()));
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            sb.append(property.getKey()).append('=').append(property.getValue()).append(';');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Plan of shared tool instances without an injector, stages are ordered as given.
+     */
+    @SuppressWarnings("unchecked")
+    static PipelinePlan of(String id, LanguageTool... tools) {
+        Class<? extends LanguageTool>[] classes = new Class[tools.length];
+        String[] modelIds = new String[tools.length];
+        for (int i = 0; i < tools.length; i++) {
+            classes[i] = tools[i].getClass();
+            modelIds[i] = "";
+        }
+
+        return new PipelinePlan(id, PipelineGraph.of(classes), tools.clone(), new Provider[tools.length], modelIds, "");
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public PipelineGraph graph() {
+        return graph;
+    }
+
+    public int size() {
+        return shared.length;
+    }
+
+    /**
+     * @return the instance of stage i to use on the current thread
+     */
+    public LanguageTool tool(int i) {
+        LanguageTool tool = shared[i];
+        if(tool != null)
+            return tool;
+
+        Slot slot = perThread[i].get();
+        tool = slot.tool;
+        if(tool == null)
+            slot.tool = tool = providers[i].get();
+
+        return tool;
+    }
+
+    /**
+     * Drop the tool instances created for each thread, they are created again if the plan is used.
+     * Thread-local values are otherwise only released when their thread dies.
+     */
+    public void release() {
+        synchronized (slots) {
+            for (Slot slot : slots) {
+                slot.tool = null;
+            }
+        }
+    }
+
+    /**
+     * @return identifies the tools, models and bound properties of this plan, changes whenever a tool or model
+     *         is replaced or a property is bound to another value
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return model id recorded in the provenance of documents annotated by stage i
+     */
+    public String modelId(int i) {
+        return modelIds[i];
+    }
+
+    /**
+     * @return true if the document has been annotated by stage i using the same model
+     */
+    public boolean isCurrent(Document doc, int i) {
+        return Provenance.isCurrent(doc, graph.implementation(i), modelIds[i]);
+    }
+
+    /**
+     * Record that stage i has been applied to the document
+     */
+    public void record(Document doc, int i) {
+        Provenance.record(doc, graph.implementation(i), modelIds[i]);
+    }
+
+    /**
+     * Release per-document state the tools kept while the plan was applied, see {@link TokenScratch},
+     * {@link DocumentScratch} and {@link SentenceTokenIndex}
+     */
+    public void finish(Document doc) {
+        release(doc);
+    }
+
+    private static void release(Document doc) {
+        TokenScratch.clearAll(doc);
+        DocumentScratch.clearAll(doc);
+        SentenceTokenIndex.invalidate(doc);
+    }
+
+    /**
+     * Mark the start of annotating a document. Applications may nest, e.g. a tool applying other tools
+     * through {@link Language#apply}, the per-document state of the tools is kept until the outermost
+     * one ends.
+     */
+    public static void begin(Document doc) {
+        synchronized (doc) {
+            int[] running = doc.hasTag(RUNNING_TAG) ? doc.getTag(RUNNING_TAG) : null;
+            if(running == null)
+                doc.putTag(RUNNING_TAG, new int[] {1});
+            else
+                running[0]++;
+        }
+    }
+
+    /**
+     * Mark the end of annotating a document, see {@link #begin(Document)}
+     * @return true if the outermost application ended and the per-document state was released
+     */
+    public static boolean end(Document doc) {
+        synchronized (doc) {
+            int[] running = doc.hasTag(RUNNING_TAG) ? doc.getTag(RUNNING_TAG) : null;
+            if(running != null && --running[0] > 0)
+                return false;
+
+            if(running != null)
+                doc.removeTag(RUNNING_TAG);
+            release(doc);
+            return true;
+        }
+    }
+
+    /**
+     * Run the stages on the document
+     * @param executor runs independent stages concurrently, see {@link PipelineGraph#executeConcurrent}.
+     *                 Null runs them one after another, which is required unless all tools are known to be safe.
+     */
+    private void execute(Document doc, Executor executor, IntConsumer runner) {
+        if(executor == null)
+            graph.execute(runner);
+        else
+            graph.executeConcurrent(doc, executor, runner);
+    }
+
+    /**
+     * Apply all stages, no provenance is recorded, see {@link #applyIncremental}
+     * @param executor runs independent stages concurrently, null to run them one after another
+     */
+    public Document apply(Document doc, Executor executor) {
+        begin(doc);
+        try {
+            execute(doc, executor, i -> tool(i).apply(doc));
+        } finally {
+            end(doc);
+        }
+        return doc;
+    }
+
+    /**
+     * Apply the plan and report every stage to the listener.
+     * @param listener receives one measurement per stage, null disables measuring
+     */
+    public Document apply(Document doc, Executor executor, String language, StageListener listener) {
+        if(listener == null)
+            return apply(doc, executor);
+
+        final boolean count = executor == null || graph.isSequential();
+        begin(doc);
+        try {
+            execute(doc, executor, i -> applyStage(i, doc, language, listener, count));
+        } finally {
+            end(doc);
+        }
+        return doc;
+    }
+
+    /**
+     * Apply only the stages that are not current, see {@link #isCurrent(Document, int)}, and record the
+     * provenance of the applied stages.
+     *
+     * A stage is also applied when any stage it depends on is. Layers a stage writes without reading
+     * are cleared before it is applied again, and every other stage writing a cleared layer is applied as well.
+     * A stage without {@link Layers} cannot be applied again since its output is unknown.
+     * @param listener receives one measurement per applied stage, null disables measuring
+     * @throws LangforiaRuntimeException if a stage without {@link Layers} has been applied with another model
+     */
+    public Document applyIncremental(Document doc, Executor executor, String language, StageListener listener) {
+        final boolean[] skip = new boolean[size()];
+        for (int i = 0; i < size(); i++) {
+            skip[i] = isCurrent(doc, i);
+        }
+
+        final LinkedHashSet<Class<?>> cleared = new LinkedHashSet<>();
+        boolean changed = true;
+        while(changed) {
+            changed = false;
+            for (int i = 0; i < size(); i++) {
+                if(!skip[i])
+                    continue;
+
+                boolean stale = false;
+                for (int dep : graph.dependencies(i)) {
+                    stale |= !skip[dep];
+                }
+
+                Layers layers = graph.layers(i);
+                if(layers != null) {
+                    for (Class<?> layer : layers.writes()) {
+                        stale |= cleared.contains(layer);
+                    }
+                }
+
+                if(stale) {
+                    skip[i] = false;
+                    changed = true;
+                }
+            }
+
+            for (int i = 0; i < size(); i++) {
+                if(!skip[i])
+                    changed |= created(doc, i, cleared);
+            }
+        }
+
+        for (Class<?> layer : cleared) {
+            DocumentLayers.clear(doc, layer);
+        }
+
+        final boolean count = executor == null || graph.isSequential();
+        begin(doc);
+        try {
+            execute(doc, executor, i -> {
+                if(!skip[i])
+                    applyStage(i, doc, language, listener, count);
+            });
+        } finally {
+            end(doc);
+        }
+
+        for (int i = 0; i < size(); i++) {
+            if(!skip[i])
+                record(doc, i);
+        }
+        return doc;
+    }
+
+    /**
+     * Add the layers stage i writes without reading to the cleared layers
+     * @return true if any layer was added
+     */
+    private boolean created(Document doc, int i, Set<Class<?>> cleared) {
+        Layers layers = graph.layers(i);
+        if(layers == null) {
+            if(Provenance.get(doc, graph.implementation(i)) != null)
+                throw new LangforiaRuntimeException("Stage " + graph.implementation(i).getName()
+                        + " declares no layers, its previous output cannot be removed before it is applied again");
+            return false;
+        }
+
+        List<Class<?>> reads = Arrays.asList(layers.reads());
+        boolean added = false;
+        for (Class<?> layer : layers.writes()) {
+            if(!reads.contains(layer))
+                added |= cleared.add(layer);
+        }
+        return added;
+    }
+
+    /**
+     * Apply a single stage on the current thread
+     * @param listener receives the measurement of the stage, null disables measuring
+     */
+    public void applyStage(int i, Document doc, String language, StageListener listener) {
+        applyStage(i, doc, language, listener, true);
+    }
+
+    /**
+     * @param count record token and sentence counts, only when no other stage runs on the document
+     */
+    private void applyStage(int i, Document doc, String language, StageListener listener, boolean count) {
+        if(listener == null) {
+            tool(i).apply(doc);
+            return;
+        }
+
+        StageMeasurement measurement = StageMeasurement.start(language, id, graph.implementation(i), doc, count);
+        boolean failed = true;
+        try {
+            tool(i).apply(doc);
+            failed = false;
+        } finally {
+            listener.onStage(measurement.stop(doc, failed));
+        }
+    }
+}
@@ -18,15 +18,23 @@ package se.lth.cs.nlp.langforia.kernel.structure;
 
 import com.google.inject.Inject;
 import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.DocumentFactory;
 import se.lth.cs.nlp.langforia.kernel.Language;
+import se.lth.cs.nlp.langforia.kernel.cache.AnnotationCache;
+import se.lth.cs.nlp.langforia.kernel.metrics.StageListener;
 
-import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 public class Pipelines {
 
     private PipelinesConfiguration config;
     private Language language;
+    private final ConcurrentHashMap<String,PipelinePlan> plans = new ConcurrentHashMap<>();
+    private volatile Executor executor;
+    private volatile StageListener listener;
+    private volatile AnnotationCache cache;
 
     @Inject
     public Pipelines(Language language, PipelinesConfiguration config) {
@@ -34,21 +42,109 @@ public class Pipelines {
         this.language = language;
     }
 
+    /**
+     * Measure every stage applied by these pipelines, null disables measuring.
+     */
+    @Inject(optional = true)
+    public void setStageListener(StageListener listener) {
+        this.listener = listener;
+    }
+
+    public StageListener getStageListener() {
+        return listener;
+    }
+
+    /**
+     * Run independent stages of a pipeline concurrently on the same document, see {@link PipelineGraph}.
+     *
+     * Off by default: docforia documents are not thread-safe and only tools that touch nothing but
+     * the layers they declare can share a document. Parallelism across documents is provided by
+     * {@link BatchPipelines} and within a tool by {@link SentenceParallel}.
+     * @param executor executor for concurrent stages, null runs stages one after another
+     */
+    public void setConcurrentStages(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Cache annotated documents, null disables caching.
+     */
+    @Inject(optional = true)
+    public void setAnnotationCache(AnnotationCache cache) {
+        this.cache = cache;
+    }
+
+    public AnnotationCache getAnnotationCache() {
+        return cache;
+    }
+
     public Set<String> pipelines() {
         return config.pipelines();
     }
 
-    public Document apply(String pipeline, Document doc) {
-        for (Class<? extends LanguageTool> tool : config.get(pipeline)) {
-            doc = language.apply(doc, tool);
+    /**
+     * Get the execution plan of a pipeline, it is built on first use.
+     */
+    public PipelinePlan plan(String pipeline) {
+        return plans.computeIfAbsent(pipeline, id -> {
+            Class<? extends LanguageTool>[] tools = config.get(id);
+            if(tools == null)
+                throw new IllegalArgumentException("Pipeline '" + id + "' does not exist for language " + language.getLanguageCode());
+
+            return PipelinePlan.compile(language, id, tools);
+        });
+    }
+
+    /**
+     * Drop all execution plans and the tool instances they hold, e.g. when the language is unloaded.
+     * Plans are built again on next use.
+     */
+    public void release() {
+        for (PipelinePlan plan : plans.values()) {
+            plan.release();
         }
-        return doc;
+        plans.clear();
+    }
+
+    public PipelineGraph graph(String pipeline) {
+        return plan(pipeline).graph();
+    }
+
+    /**
+     * Apply a pipeline to a document
+     * @return the annotated document, when served from the cache this is a new document with the id of doc,
+     *         see {@link AnnotationCache#apply}.
+     */
+    public Document apply(String pipeline, Document doc) {
+        PipelinePlan plan = plan(pipeline);
+        AnnotationCache cache = this.cache;
+        if(cache == null || !AnnotationCache.isCacheable(doc))
+            return plan.apply(doc, executor, language.getLanguageCode(), listener);
+
+        String key = AnnotationCache.key(language.getLanguageCode(), pipeline, plan.fingerprint(),
+                                         language.getInstance(DocumentFactory.class), doc.text());
+        return cache.apply(key, doc, d -> plan.apply(d, executor, language.getLanguageCode(), listener));
+    }
+
+    /**
+     * Apply only the stages whose provenance is missing or recorded with another model, see
+     * {@link PipelinePlan#applyIncremental}. Useful to add new stages to documents that have already been
+     * annotated, only this method records provenance.
+     */
+    public Document applyIncremental(String pipeline, Document doc) {
+        return plan(pipeline).applyIncremental(doc, executor, language.getLanguageCode(), listener);
+    }
+
+    /**
+     * Start a streaming runner where every tool of the pipeline is a separate stage.
+     * @param capacity maximum number of documents waiting in front of each stage
+     * @param threads  number of workers per stage, in pipeline order, missing entries default to 1
+     */
+    public StreamingPipeline stream(String pipeline, int capacity, int...threads) {
+        return new StreamingPipeline(plan(pipeline), language.getLanguageCode(), listener, capacity, threads);
     }
 
     public Document apply(Document doc) {
-        for (Class<? extends LanguageTool> tool : config.getDefault()) {
-            doc = language.apply(doc, tool);
-        }
-        return doc;
+        return apply("default", doc);
     }
 }
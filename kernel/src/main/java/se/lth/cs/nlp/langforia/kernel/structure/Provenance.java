@@ -0,0 +1,118 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import com.google.inject.Binding;
+import com.google.inject.Key;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.HasDependencies;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.LinkedKeyBinding;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.nlp.langforia.kernel.Language;
+import se.lth.cs.nlp.langforia.kernel.Model;
+import se.lth.cs.nlp.langforia.kernel.resources.Resource;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Records which tool and model produced the annotations of a document.
+ *
+ * Every stage applied by {@link PipelinePlan#applyIncremental} stores a document property named
+ * {@link #PROPERTY_PREFIX} followed by the implementation class, the value is the model id of the tool.
+ * Plain applies record nothing, so the properties only appear in documents that asked for them.
+ */
+public final class Provenance {
+    public static final String PROPERTY_PREFIX = "langforia.stage.";
+
+    private Provenance() {
+    }
+
+    public static String property(Class<?> implementation) {
+        return PROPERTY_PREFIX + implementation.getName();
+    }
+
+    /**
+     * @return model id recorded for the tool, or null if the tool has not been applied
+     */
+    public static String get(Document doc, Class<?> implementation) {
+        String property = property(implementation);
+        return doc.hasProperty(property) ? doc.getProperty(property) : null;
+    }
+
+    public static void record(Document doc, Class<?> implementation, String modelId) {
+        doc.putProperty(property(implementation), modelId);
+    }
+
+    /**
+     * @return true if the tool has been applied with the same model
+     */
+    public static boolean isCurrent(Document doc, Class<?> implementation, String modelId) {
+        return modelId.equals(get(doc, implementation));
+    }
+
+    /**
+     * Find the model id of a tool.
+     *
+     * Uses {@link ModelIdentity} if implemented, otherwise the names of all models the tool depends on,
+     * directly or through other bindings, e.g. "ext.maltparser.model=swemalt-1.7.2.mco".
+     * Tools without models have the empty id.
+     */
+    public static String modelId(Language language, Class<? extends LanguageTool> stage, LanguageTool instance) {
+        if(instance instanceof ModelIdentity)
+            return ((ModelIdentity) instance).modelId();
+
+        TreeMap<String,String> models = new TreeMap<>();
+        HashSet<Key<?>> visited = new HashSet<>();
+        ArrayDeque<Key<?>> queue = new ArrayDeque<>();
+        queue.add(Key.get(stage));
+
+        while(!queue.isEmpty()) {
+            Key<?> key = queue.poll();
+            if(!visited.add(key))
+                continue;
+
+            if(key.getAnnotation() instanceof Model && key.getTypeLiteral().getRawType() == Resource.class) {
+                Binding<?> binding = language.getBindingOrNull(key);
+                String name = ((Model) key.getAnnotation()).value();
+                if(binding instanceof InstanceBinding)
+                    models.put(name, ((Resource)((InstanceBinding<?>) binding).getInstance()).name());
+                else
+                    models.put(name, "");
+                continue;
+            }
+
+            Binding<?> binding = language.getBindingOrNull(key);
+            if(binding instanceof LinkedKeyBinding) {
+                queue.add(((LinkedKeyBinding<?>) binding).getLinkedKey());
+            }
+            else if(binding instanceof HasDependencies) {
+                for (Dependency<?> dependency : ((HasDependencies) binding).getDependencies()) {
+                    queue.add(dependency.getKey());
+                }
+            }
+        }
+
+        return models.entrySet().stream()
+                     .map(e -> e.getKey() + "=" + e.getValue())
+                     .collect(Collectors.joining(";"));
+    }
+}
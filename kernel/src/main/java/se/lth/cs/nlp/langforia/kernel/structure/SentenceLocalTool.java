@@ -0,0 +1,51 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.graph.text.Sentence;
+import se.lth.cs.docforia.graph.text.Token;
+
+import java.util.List;
+
+/**
+ * A tool whose annotations of a sentence only depend on that sentence.
+ *
+ * Sentences are processed concurrently by {@link SentenceParallel}, results are then committed to the
+ * document one sentence at a time in document order, which keeps the output deterministic.
+ *
+ * @param <R> result of processing one sentence
+ */
+public interface SentenceLocalTool<R> extends LanguageTool {
+
+    /**
+     * Annotate one sentence, called concurrently for different sentences.
+     * Must only read from the document.
+     * @param tokens tokens of the sentence in order
+     */
+    R process(Document doc, Sentence sentence, List<Token> tokens);
+
+    /**
+     * Write the result of a sentence to the document, called on a single thread in sentence order.
+     */
+    void commit(Document doc, Sentence sentence, List<Token> tokens, R result);
+
+    @Override
+    default void apply(Document doc) {
+        SentenceParallel.apply(doc, this);
+    }
+}
@@ -0,0 +1,122 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.graph.text.Sentence;
+import se.lth.cs.docforia.graph.text.Token;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs {@link SentenceLocalTool}s over partitions of the sentences in a document on a fork-join pool.
+ *
+ * Documents below {@link #SEQUENTIAL_THRESHOLD} tokens are processed on the calling thread.
+ */
+public final class SentenceParallel {
+    /** Documents with fewer tokens than this are not split */
+    public static final int SEQUENTIAL_THRESHOLD = 2048;
+
+    /** Approximate number of tokens processed by a single task */
+    public static final int GRAIN = 256;
+
+    private SentenceParallel() {
+    }
+
+    public static <R> void apply(Document doc, SentenceLocalTool<R> tool) {
+        apply(doc, tool, ForkJoinPool.commonPool());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <R> void apply(Document doc, SentenceLocalTool<R> tool, ForkJoinPool pool) {
+        SentenceTokenIndex index = SentenceTokenIndex.of(doc);
+
+        final int n = index.size();
+        final Sentence[] sentences = new Sentence[n];
+        final List<Token>[] tokens = new List[n];
+        final int[] offsets = new int[n+1];
+
+        for (int i = 0; i < n; i++) {
+            sentences[i] = index.sentence(i);
+            tokens[i] = index.tokens(i);
+            offsets[i+1] = index.offset(i+1);
+        }
+
+        if(n < 2 || offsets[n] < SEQUENTIAL_THRESHOLD || pool.getParallelism() < 2) {
+            for (int i = 0; i < n; i++) {
+                tool.commit(doc, sentences[i], tokens[i], tool.process(doc, sentences[i], tokens[i]));
+            }
+            return;
+        }
+
+        final Object[] results = new Object[n];
+        Partition<R> task = new Partition<>(tool, doc, sentences, tokens, offsets, results, 0, n);
+        if(ForkJoinTask.inForkJoinPool())
+            task.invoke();
+        else
+            pool.invoke(task);
+
+        for (int i = 0; i < n; i++) {
+            tool.commit(doc, sentences[i], tokens[i], (R)results[i]);
+        }
+    }
+
+    private static class Partition<R> extends RecursiveAction {
+        private final SentenceLocalTool<R> tool;
+        private final Document doc;
+        private final Sentence[] sentences;
+        private final List<Token>[] tokens;
+        private final int[] offsets;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+
+        Partition(SentenceLocalTool<R> tool, Document doc, Sentence[] sentences, List<Token>[] tokens, int[] offsets, Object[] results, int from, int to) {
+            this.tool = tool;
+            this.doc = doc;
+            this.sentences = sentences;
+            this.tokens = tokens;
+            this.offsets = offsets;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from == 1 || offsets[to] - offsets[from] <= GRAIN) {
+                for (int i = from; i < to; i++) {
+                    results[i] = tool.process(doc, sentences[i], tokens[i]);
+                }
+                return;
+            }
+
+            //Split on tokens rather than sentences, sentence lengths vary a lot.
+            int middle = offsets[from] + (offsets[to] - offsets[from]) / 2;
+            int split = from + 1;
+            while(split < to - 1 && offsets[split+1] <= middle) {
+                split++;
+            }
+
+            invokeAll(new Partition<>(tool, doc, sentences, tokens, offsets, results, from, split),
+                      new Partition<>(tool, doc, sentences, tokens, offsets, results, split, to));
+        }
+    }
+}
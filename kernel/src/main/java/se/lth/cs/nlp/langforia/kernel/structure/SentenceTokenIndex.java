@@ -0,0 +1,261 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.graph.text.Sentence;
+import se.lth.cs.docforia.graph.text.Token;
+import se.lth.cs.docforia.query.NodeTVar;
+import se.lth.cs.docforia.query.PropositionGroup;
+import se.lth.cs.docforia.query.QueryCollectors;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sentences of a document with the tokens they cover, ordered by position.
+ *
+ * The index is computed once per document with the sentence/token grouping query and cached as a
+ * document tag, so every sentence based tool of a pipeline shares it, and dropped when a pipeline has
+ * finished the document, see {@link PipelinePlan#finish(Document)}. A cached index is discarded when the
+ * Token or Sentence layers no longer match it: when the size of either layer changed, when the range of a
+ * sentence or of the first or last token of a sentence moved, or when a node was replaced. Replaced nodes are
+ * recognized by comparing the stored nodes of both layers by identity with those seen when the index was
+ * built, the nodes themselves are not modified and layers missing from the document are not created.
+ */
+public final class SentenceTokenIndex {
+    /** Tag the index is cached under */
+    public static final String TAG = "langforia.sentence-token-index";
+
+    private final Sentence[] sentences;
+    private final Token[] tokens;
+    private final int[] offsets;
+    private final int[] sentenceStarts;
+    private final int[] sentenceEnds;
+    private final int[] tokenStarts;
+    private final int[] tokenEnds;
+    private final Object[] tokenLayer;
+    private final Object[] sentenceLayer;
+
+    private SentenceTokenIndex(Document doc) {
+        NodeTVar<Token> T = Token.var();
+        NodeTVar<Sentence> S = Sentence.var();
+
+        List<PropositionGroup> groups = doc.select(S, T)
+                                           .where(T).coveredBy(S)
+                                           .stream()
+                                           .collect(QueryCollectors.groupBy(doc, S).orderByKey(S).orderByValue(T).collector());
+
+        final int n = groups.size();
+        this.sentences = new Sentence[n];
+        this.offsets = new int[n+1];
+        this.sentenceStarts = new int[n];
+        this.sentenceEnds = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            PropositionGroup group = groups.get(i);
+            sentences[i] = group.key(S);
+            sentenceStarts[i] = sentences[i].getStart();
+            sentenceEnds[i] = sentences[i].getEnd();
+            offsets[i+1] = offsets[i] + group.size();
+        }
+
+        this.tokens = new Token[offsets[n]];
+        this.tokenStarts = new int[tokens.length];
+        this.tokenEnds = new int[tokens.length];
+        for (int i = 0; i < n; i++) {
+            int k = offsets[i];
+            for (Token token : groups.get(i).nodes(T)) {
+                tokens[k] = token;
+                tokenStarts[k] = token.getStart();
+                tokenEnds[k] = token.getEnd();
+                k++;
+            }
+        }
+
+        this.tokenLayer = layer(doc, Token.class);
+        this.sentenceLayer = layer(doc, Sentence.class);
+    }
+
+    /**
+     * @return stored nodes of the layer in storage order, empty if the layer does not exist
+     */
+    private static Object[] layer(Document doc, Class<?> layer) {
+        Object[] nodes = new Object[DocumentLayers.size(doc, layer)];
+        if(nodes.length > 0) {
+            int i = 0;
+            for (Object node : doc.store().nodeLayer(Document.nodeLayer(layer))) {
+                nodes[i++] = node;
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * @return true if the stored nodes of the layer are the given ones, in the same order
+     */
+    private static boolean sameLayer(Document doc, Class<?> layer, Object[] nodes) {
+        if(nodes.length == 0)
+            return true;
+
+        int i = 0;
+        for (Object node : doc.store().nodeLayer(Document.nodeLayer(layer))) {
+            if(i >= nodes.length || node != nodes[i++])
+                return false;
+        }
+        return i == nodes.length;
+    }
+
+    /**
+     * @return the cached index of the document, computed if missing or out of date
+     */
+    public static SentenceTokenIndex of(Document doc) {
+        //Stages running concurrently on the same document may ask at the same time
+        synchronized (doc) {
+            if(doc.hasTag(TAG)) {
+                SentenceTokenIndex index = doc.getTag(TAG);
+                if(index.isCurrent(doc))
+                    return index;
+            }
+
+            SentenceTokenIndex index = new SentenceTokenIndex(doc);
+            doc.putTag(TAG, index);
+            return index;
+        }
+    }
+
+    /**
+     * @return the index cached by the last call to {@link #of(Document)}, not checked against the document,
+     *         or null if there is none
+     */
+    public static SentenceTokenIndex cached(Document doc) {
+        synchronized (doc) {
+            return doc.hasTag(TAG) ? doc.getTag(TAG) : null;
+        }
+    }
+
+    /**
+     * Drop the cached index of a document
+     */
+    public static void invalidate(Document doc) {
+        synchronized (doc) {
+            if(doc.hasTag(TAG))
+                doc.removeTag(TAG);
+        }
+    }
+
+    /**
+     * @return true if the Token and Sentence layers still match this index
+     */
+    public boolean isCurrent(Document doc) {
+        if(DocumentLayers.size(doc, Token.class) != tokenLayer.length
+                || DocumentLayers.size(doc, Sentence.class) != sentenceLayer.length)
+            return false;
+
+        for (int i = 0; i < sentences.length; i++) {
+            if(sentences[i].getStart() != sentenceStarts[i] || sentences[i].getEnd() != sentenceEnds[i])
+                return false;
+
+            if(offsets[i+1] > offsets[i]) {
+                int first = offsets[i];
+                int last = offsets[i+1] - 1;
+                if(tokens[first].getStart() != tokenStarts[first] || tokens[last].getEnd() != tokenEnds[last])
+                    return false;
+            }
+        }
+
+        //Nodes removed and added again at the same positions
+        return sameLayer(doc, Sentence.class, sentenceLayer) && sameLayer(doc, Token.class, tokenLayer);
+    }
+
+    /**
+     * @return number of sentences
+     */
+    public int size() {
+        return sentences.length;
+    }
+
+    /**
+     * @return total number of tokens in all sentences
+     */
+    public int tokenCount() {
+        return tokens.length;
+    }
+
+    public Sentence sentence(int i) {
+        return sentences[i];
+    }
+
+    /**
+     * @return tokens of sentence i, a read-only view
+     */
+    public List<Token> tokens(int i) {
+        return Collections.unmodifiableList(Arrays.asList(tokens).subList(offsets[i], offsets[i+1]));
+    }
+
+    /**
+     * @return position of the sentence in this index, -1 if it is not part of it
+     */
+    public int indexOf(Sentence sentence) {
+        int start = sentence.getStart();
+        int lo = 0, hi = sentences.length;
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(sentenceStarts[mid] < start)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        for (int i = lo; i < sentences.length && sentenceStarts[i] == start; i++) {
+            if(sentences[i] == sentence || sentences[i].equals(sentence))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return token k in sentence order
+     */
+    public Token token(int k) {
+        return tokens[k];
+    }
+
+    /**
+     * @return index of the first token of sentence i, offset(size()) is the number of tokens
+     */
+    public int offset(int i) {
+        return offsets[i];
+    }
+
+    public int sentenceStart(int i) {
+        return sentenceStarts[i];
+    }
+
+    public int sentenceEnd(int i) {
+        return sentenceEnds[i];
+    }
+
+    public int tokenStart(int k) {
+        return tokenStarts[k];
+    }
+
+    public int tokenEnd(int k) {
+        return tokenEnds[k];
+    }
+}
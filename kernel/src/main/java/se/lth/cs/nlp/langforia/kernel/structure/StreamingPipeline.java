@@ -0,0 +1,274 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import se.lth.cs.docforia.Document;
+import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaRuntimeException;
+import se.lth.cs.nlp.langforia.kernel.metrics.StageListener;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs every tool of a pipeline as its own stage so that consecutive documents are annotated concurrently
+ * by different tools.
+ *
+ * Stages are connected by bounded queues, a full queue blocks the stage before it. Each stage has its own
+ * number of worker threads. Results are returned in submission order, a failing document skips the
+ * remaining stages and is reported in its {@link BatchPipelines.Result}.
+ *
+ * Submit documents from one thread and take results from another, or use {@link #apply(Iterable, Consumer)}.
+ */
+public class StreamingPipeline implements AutoCloseable {
+
+    private static final class Item {
+        private final int index;
+        private final Document doc;
+        private Throwable error;
+
+        Item(int index, Document doc) {
+            this.index = index;
+            this.doc = doc;
+        }
+    }
+
+    private static final Item END = new Item(-1, null);
+
+    private final PipelinePlan plan;
+    private final String lang;
+    private final StageListener listener;
+    private final BlockingQueue<Item>[] queues;
+    private final AtomicInteger[] running;
+    private final ArrayList<Thread> threads = new ArrayList<>();
+
+    private final TreeMap<Integer,Item> pending = new TreeMap<>();
+    private int submitted = 0;
+    private int emitted = 0;
+    private boolean finished = false;
+    private boolean ended = false;
+
+    /**
+     * Start stage workers
+     * @param plan     pipeline to run
+     * @param lang     language code, used in thread names and measurements
+     * @param listener receives stage measurements, null disables measuring
+     * @param capacity maximum number of documents waiting in front of each stage
+     * @param threads  number of workers per stage, missing entries default to 1
+     */
+    @SuppressWarnings("unchecked")
+    public StreamingPipeline(PipelinePlan plan, String lang, StageListener listener, int capacity, int...threads) {
+        if(capacity < 1)
+            throw new IllegalArgumentException("capacity must be larger than 0");
+
+        this.plan = plan;
+        this.lang = lang;
+        this.listener = listener;
+
+        final int stages = plan.size();
+        this.queues = new BlockingQueue[stages+1];
+        this.running = new AtomicInteger[stages];
+
+        for (int i = 0; i <= stages; i++) {
+            queues[i] = new ArrayBlockingQueue<>(capacity);
+        }
+
+        for (int i = 0; i < stages; i++) {
+            int workers = i < threads.length ? threads[i] : 1;
+            if(workers < 1)
+                throw new IllegalArgumentException("Stage " + i + " must have at least one thread");
+
+            running[i] = new AtomicInteger(workers);
+            for (int k = 0; k < workers; k++) {
+                final int stage = i;
+                Thread thread = new Thread(() -> work(stage),
+                        "langforia-stream-" + lang + "-" + plan.graph().implementation(i).getSimpleName() + "-" + (k+1));
+                thread.setDaemon(true);
+                this.threads.add(thread);
+            }
+        }
+
+        this.threads.forEach(Thread::start);
+    }
+
+    public PipelinePlan plan() {
+        return plan;
+    }
+
+    private void work(int stage) {
+        BlockingQueue<Item> input = queues[stage];
+        BlockingQueue<Item> output = queues[stage+1];
+
+        try {
+            while(true) {
+                Item item = input.take();
+                if(item == END) {
+                    //Let sibling workers see the end, the last one passes it on.
+                    input.put(END);
+                    if(running[stage].decrementAndGet() == 0) {
+                        input.clear();
+                        output.put(END);
+                    }
+                    return;
+                }
+
+                if(item.error == null) {
+                    try {
+                        if(stage == 0)
+                            PipelinePlan.begin(item.doc);
+                        plan.applyStage(stage, item.doc, lang, listener);
+                        if(stage == plan.size() - 1)
+                            PipelinePlan.end(item.doc);
+                    } catch (Throwable e) {
+                        //Errors are forwarded as well, a dead worker would never pass on the end.
+                        item.error = e;
+                        PipelinePlan.end(item.doc);
+                    }
+                }
+
+                output.put(item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Submit a document, blocks while the first stage is full.
+     */
+    public void submit(Document doc) throws InterruptedException {
+        if(finished)
+            throw new IllegalStateException("No documents can be submitted after finish()");
+
+        queues[0].put(new Item(submitted++, doc));
+    }
+
+    /**
+     * Signal that no more documents will be submitted.
+     */
+    public void finish() throws InterruptedException {
+        if(!finished) {
+            finished = true;
+            queues[0].put(END);
+        }
+    }
+
+    /**
+     * Take the next result in submission order, blocks until it is available.
+     * @return the result or null when all documents submitted before finish() have been returned.
+     */
+    public BatchPipelines.Result take() throws InterruptedException {
+        BlockingQueue<Item> output = queues[queues.length-1];
+        while(!pending.containsKey(emitted)) {
+            if(ended)
+                return null;
+
+            Item item = output.take();
+            if(item == END)
+                ended = true;
+            else
+                pending.put(item.index, item);
+        }
+
+        Item item = pending.remove(emitted++);
+        return new BatchPipelines.Result(item.index, item.doc, item.error);
+    }
+
+    /**
+     * Stream all documents through the pipeline.
+     * @param docs     documents, consumed lazily on a separate thread
+     * @param consumer receives results in input order on the calling thread
+     */
+    public void apply(Iterable<Document> docs, Consumer<BatchPipelines.Result> consumer) {
+        final AtomicReference<Throwable> feedError = new AtomicReference<>();
+        Thread feeder = new Thread(() -> {
+            try {
+                Iterator<Document> iter = docs.iterator();
+                while(iter.hasNext()) {
+                    submit(iter.next());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                feedError.set(e);
+            } finally {
+                try {
+                    finish();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "langforia-stream-" + lang + "-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+
+        boolean completed = false;
+        try {
+            BatchPipelines.Result result;
+            while((result = take()) != null) {
+                consumer.accept(result);
+            }
+            feeder.join();
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LangforiaRuntimeException(lang, "Streaming pipeline was interrupted", e);
+        } finally {
+            if(!completed) {
+                //The remaining documents will never be taken, stop the feeder and the workers blocked on them.
+                feeder.interrupt();
+                close();
+                join(feeder);
+            }
+        }
+
+        if(feedError.get() != null)
+            throw new LangforiaRuntimeException(lang, "Failed to read documents", feedError.get());
+    }
+
+    /**
+     * Stop all stage workers and wait for them to exit, documents still in the pipeline are dropped.
+     */
+    @Override
+    public void close() {
+        threads.forEach(Thread::interrupt);
+        threads.forEach(StreamingPipeline::join);
+    }
+
+    private static void join(Thread thread) {
+        if(thread == Thread.currentThread())
+            return;
+
+        boolean interrupted = false;
+        while(true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if(interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,136 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.graph.text.Sentence;
+
+import java.util.HashMap;
+
+/**
+ * Tool-private state of the tokens of a document, one slot per token of a {@link SentenceTokenIndex}.
+ *
+ * Meant for intermediate results passed between stages of the same tool, which should not be stored on the
+ * tokens where they would live as long as the document. All scratch areas of a document are kept in one
+ * document tag, which is dropped when a pipeline has finished the document, see {@link PipelinePlan#finish(Document)}.
+ * An area belongs to the index it was created for: when the index is rebuilt the area is replaced by an empty one.
+ *
+ * Different slots may be written concurrently, e.g. from {@link SentenceLocalTool#process}.
+ * @param <T> slot type
+ */
+public final class TokenScratch<T> {
+    /** Tag the scratch areas of a document are kept under */
+    public static final String TAG = "langforia.token-scratch";
+
+    private final SentenceTokenIndex index;
+    private final Object[] slots;
+
+    private TokenScratch(SentenceTokenIndex index) {
+        this.index = index;
+        this.slots = new Object[index.tokenCount()];
+    }
+
+    /**
+     * Get the scratch area of a tool, created if missing.
+     *
+     * The area is bound to the index last computed by {@link SentenceTokenIndex#of(Document)}, which
+     * sentence based tools do once when they start. This keeps the lookup cheap enough to do per sentence.
+     * @param key name of the area, e.g. prefixed by the tool
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> TokenScratch<T> of(Document doc, String key) {
+        synchronized (doc) {
+            SentenceTokenIndex index = SentenceTokenIndex.cached(doc);
+            if(index == null)
+                index = SentenceTokenIndex.of(doc);
+
+            HashMap<String,TokenScratch<?>> areas;
+            if(doc.hasTag(TAG)) {
+                areas = doc.getTag(TAG);
+            } else {
+                areas = new HashMap<>();
+                doc.putTag(TAG, areas);
+            }
+
+            TokenScratch<?> scratch = areas.get(key);
+            if(scratch == null || scratch.index != index) {
+                scratch = new TokenScratch<>(index);
+                areas.put(key, scratch);
+            }
+            return (TokenScratch<T>)scratch;
+        }
+    }
+
+    /**
+     * Drop the scratch area of a tool
+     */
+    public static void clear(Document doc, String key) {
+        synchronized (doc) {
+            if(doc.hasTag(TAG)) {
+                HashMap<String,TokenScratch<?>> areas = doc.getTag(TAG);
+                areas.remove(key);
+                if(areas.isEmpty())
+                    doc.removeTag(TAG);
+            }
+        }
+    }
+
+    /**
+     * Drop all scratch areas of a document
+     */
+    public static void clearAll(Document doc) {
+        synchronized (doc) {
+            if(doc.hasTag(TAG))
+                doc.removeTag(TAG);
+        }
+    }
+
+    public SentenceTokenIndex index() {
+        return index;
+    }
+
+    /**
+     * @return number of slots, the number of tokens in the index
+     */
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     * @return slot of the first token of a sentence
+     * @throws IllegalArgumentException if the sentence is not part of the index
+     */
+    public int offset(Sentence sentence) {
+        int i = index.indexOf(sentence);
+        if(i == -1)
+            throw new IllegalArgumentException("Sentence is not part of the index: " + sentence);
+
+        return index.offset(i);
+    }
+
+    /**
+     * @return value of slot k, null if not set
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int k) {
+        return (T)slots[k];
+    }
+
+    public void set(int k, T value) {
+        slots[k] = value;
+    }
+}
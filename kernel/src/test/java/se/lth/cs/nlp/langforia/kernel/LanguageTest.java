@@ -0,0 +1,90 @@
+package se.lth.cs.nlp.langforia.kernel;
+
+import org.junit.Test;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.memstore.MemoryDocument;
+import se.lth.cs.nlp.langforia.kernel.structure.DocumentScratch;
+import se.lth.cs.nlp.langforia.kernel.structure.LanguageTool;
+import se.lth.cs.nlp.langforia.kernel.structure.PipelinePlan;
+import se.lth.cs.nlp.langforia.kernel.structure.TokenScratch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class LanguageTest {
+
+    private static final Language language = new Language("xx", new LanguageModule() {}) {};
+
+    public static class Writer implements LanguageTool {
+        @Override
+        public void apply(Document doc) {
+            DocumentScratch.put(doc, "test", "written");
+            TokenScratch.of(doc, "test");
+        }
+    }
+
+    public static class Reader implements LanguageTool {
+        @Override
+        public void apply(Document doc) {
+            doc.putProperty("read", String.valueOf(DocumentScratch.<String>get(doc, "test")));
+        }
+    }
+
+    public static class Failing implements LanguageTool {
+        @Override
+        public void apply(Document doc) {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    /** Applies other tools itself, like a full pipeline tool */
+    public static class Nested implements LanguageTool {
+        @Override
+        public void apply(Document doc) {
+            language.apply(doc, Writer.class);
+            language.apply(doc, new Reader());
+        }
+    }
+
+    private static void assertReleased(Document doc) {
+        assertFalse(doc.hasTag(DocumentScratch.TAG));
+        assertFalse(doc.hasTag(TokenScratch.TAG));
+        assertFalse(doc.hasTag(PipelinePlan.RUNNING_TAG));
+    }
+
+    @Test
+    public void testApplyTools() {
+        Document doc = language.apply(new MemoryDocument("doc", "text"), Writer.class, Reader.class);
+        assertEquals("written", doc.getProperty("read"));
+        assertReleased(doc);
+    }
+
+    @Test
+    public void testApplyTool() {
+        Document doc = language.apply(new MemoryDocument("doc", "text"), new Writer());
+        assertReleased(doc);
+
+        language.apply(doc, Reader.class);
+        assertEquals("null", doc.getProperty("read"));
+    }
+
+    @Test
+    public void testNested() {
+        Document doc = language.apply(new MemoryDocument("doc", "text"), Nested.class);
+        assertEquals("written", doc.getProperty("read"));
+        assertReleased(doc);
+    }
+
+    @Test
+    public void testFailure() {
+        Document doc = new MemoryDocument("doc", "text");
+        try {
+            language.apply(doc, Writer.class, Failing.class);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertReleased(doc);
+    }
+}
@@ -0,0 +1,35 @@
+package se.lth.cs.nlp.langforia.kernel;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ModelManagerTest {
+
+    @Test
+    public void testFailingLanguageIsUnavailable() {
+        ExecutorService loader = LanguageWarmup.newLoaderPool(2);
+        try {
+            ModelManager manager = new ModelManager(Long.MAX_VALUE, loader);
+            manager.register("yy", () -> {
+                throw new IllegalStateException("missing model");
+            });
+            manager.register("zz", () -> null);
+
+            manager.load("yy").exceptionally(ex -> null).join();
+
+            assertFalse(manager.isLoaded("yy"));
+            assertNull(manager.failure("zz"));
+            assertEquals("missing model", manager.failure("yy").getMessage());
+            assertTrue(manager.unavailable().contains("yy"));
+            assertFalse(manager.unavailable().contains("zz"));
+        } finally {
+            loader.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package se.lth.cs.nlp.langforia.kernel.cache;
+
+import org.junit.Test;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.DocumentFactory;
+import se.lth.cs.docforia.graph.text.Token;
+import se.lth.cs.docforia.memstore.MemoryDocument;
+import se.lth.cs.docforia.memstore.MemoryDocumentFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AnnotationCacheTest {
+
+    private static final DocumentFactory factory = MemoryDocumentFactory.getInstance();
+
+    private static int tokens(Document doc) {
+        int count = 0;
+        for (Token ignored : doc.nodes(Token.class)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testIsCacheable() {
+        assertTrue(AnnotationCache.isCacheable(new MemoryDocument("doc", "a b")));
+
+        Document annotated = new MemoryDocument("doc", "a b");
+        new Token(annotated).setRange(0, 1);
+        assertFalse(AnnotationCache.isCacheable(annotated));
+
+        Document withProperty = new MemoryDocument("doc", "a b");
+        withProperty.putProperty("source", "test");
+        assertFalse(AnnotationCache.isCacheable(withProperty));
+    }
+
+    @Test
+    public void testKey() {
+        DocumentFactory other = new DocumentFactory() {
+            @Override
+            public Document create(String id, String text) {
+                return factory.create(id, text);
+            }
+
+            @Override
+            public Document createFragment(String id, String text) {
+                return factory.createFragment(id, text);
+            }
+        };
+
+        String key = AnnotationCache.key("sv", "tokenize", "fingerprint", factory, "a b");
+        assertEquals(key, AnnotationCache.key("sv", "tokenize", "fingerprint", factory, "a b"));
+        assertNotEquals(key, AnnotationCache.key("sv", "tokenize", "fingerprint", other, "a b"));
+        assertNotEquals(key, AnnotationCache.key("sv", "tokenize", "other", factory, "a b"));
+        assertNotEquals(key, AnnotationCache.key("sv", "tokenize", "fingerprint", factory, "a c"));
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        AnnotationCache cache = new AnnotationCache(1 << 20);
+        AtomicInteger annotated = new AtomicInteger();
+        Consumer<Document> tokenizer = doc -> {
+            annotated.incrementAndGet();
+            new Token(doc).setRange(0, 1);
+            new Token(doc).setRange(2, 3);
+        };
+
+        String key = AnnotationCache.key("sv", "tokenize", "fingerprint", factory, "a b");
+        Document first = new MemoryDocument("first", "a b");
+        assertSame(first, cache.apply(key, first, tokenizer));
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.puts());
+
+        Document second = new MemoryDocument("second", "a b");
+        Document result = cache.apply(key, second, tokenizer);
+        assertNotSame(first, result);
+        assertEquals(1, cache.hits());
+        assertEquals(1, annotated.get());
+        assertEquals("second", result.id());
+        assertEquals("a b", result.text());
+        assertEquals(2, tokens(result));
+        assertEquals("first", first.id());
+    }
+
+    @Test
+    public void testCorruptEntry() throws IOException {
+        File directory = Files.createTempDirectory("langforia-cache").toFile();
+        try {
+            String key = AnnotationCache.key("sv", "tokenize", "fingerprint", factory, "a b");
+            AnnotationCache cache = new AnnotationCache(1 << 20, directory);
+            byte[] data = new MemoryDocument("doc", "a b").toBytes();
+            cache.put(key, Arrays.copyOf(data, data.length / 2));
+
+            //A new cache only has the truncated entry on disk
+            cache = new AnnotationCache(1 << 20, directory);
+            AtomicInteger annotated = new AtomicInteger();
+            Document doc = new MemoryDocument("doc", "a b");
+            assertSame(doc, cache.apply(key, doc, d -> {
+                annotated.incrementAndGet();
+                new Token(d).setRange(0, 1);
+            }));
+            assertEquals(1, annotated.get());
+
+            //The entry was replaced by the new annotation
+            cache = new AnnotationCache(1 << 20, directory);
+            Document cached = cache.apply(key, new MemoryDocument("again", "a b"), d -> annotated.incrementAndGet());
+            assertEquals(1, annotated.get());
+            assertEquals(1, tokens(cached));
+        } finally {
+            for (File file : Files.walk(directory.toPath()).map(Path::toFile).sorted(Comparator.reverseOrder()).toArray(File[]::new)) {
+                file.delete();
+            }
+        }
+    }
+}
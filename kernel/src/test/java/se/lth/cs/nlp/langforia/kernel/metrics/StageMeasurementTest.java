@@ -0,0 +1,43 @@
+package se.lth.cs.nlp.langforia.kernel.metrics;
+
+import org.junit.Test;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.graph.text.Sentence;
+import se.lth.cs.docforia.graph.text.Token;
+import se.lth.cs.docforia.memstore.MemoryDocument;
+import se.lth.cs.nlp.langforia.kernel.structure.DocumentLayers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StageMeasurementTest {
+
+    @Test
+    public void testDoesNotCreateLayers() {
+        Document doc = new MemoryDocument("test", "Hello world.");
+        StageMeasurement measurement = StageMeasurement.start("en", "default", Object.class, doc);
+        new Token(doc).setRange(0, 5);
+        new Token(doc).setRange(6, 11);
+        measurement.stop(doc, false);
+
+        assertTrue(measurement.counted());
+        assertEquals(0, measurement.tokensBefore());
+        assertEquals(2, measurement.tokensAfter());
+        assertEquals(0, measurement.sentencesAfter());
+        assertTrue(DocumentLayers.hasNodeLayer(doc, Token.class));
+        assertFalse(DocumentLayers.hasNodeLayer(doc, Sentence.class));
+    }
+
+    @Test
+    public void testNotCounted() {
+        Document doc = new MemoryDocument("test", "Hello world.");
+        StageMeasurement measurement = StageMeasurement.start("en", "default", Object.class, doc, false);
+        new Token(doc).setRange(0, 5);
+        measurement.stop(doc, false);
+
+        assertFalse(measurement.counted());
+        assertEquals(-1, measurement.tokensBefore());
+        assertEquals(-1, measurement.tokensAfter());
+    }
+}
@@ -0,0 +1,89 @@
+package se.lth.cs.nlp.langforia.kernel.resources;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JarResourceTest {
+    private static final String RESOURCE = "se/lth/cs/nlp/langforia/kernel/resources/extract.txt";
+    private static final String CONTENT = "Langforia resource extracted from the classpath.\n";
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private Path root;
+    private Path cache;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("langforia-test");
+        cache = root.resolve("cache");
+        System.setProperty(JarResource.CACHE_PROPERTY, cache.toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        System.clearProperty(JarResource.CACHE_PROPERTY);
+        try(Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testExtractOwnerOnly() throws IOException {
+        File file = new JarResource("extract.txt", RESOURCE).file();
+        assertEquals(CONTENT, read(file));
+        assertTrue(file.toPath().startsWith(cache));
+
+        if(POSIX) {
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(cache)));
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath().getParent())));
+        }
+    }
+
+    @Test
+    public void testReplacesModifiedFile() throws IOException {
+        File file = new JarResource("extract.txt", RESOURCE).file();
+
+        //Same size, different content.
+        byte[] planted = CONTENT.toUpperCase().getBytes(StandardCharsets.UTF_8);
+        assertEquals(CONTENT.length(), planted.length);
+        Files.write(file.toPath(), planted);
+
+        File again = new JarResource("extract.txt", RESOURCE).file();
+        assertEquals(file, again);
+        assertEquals(CONTENT, read(again));
+    }
+
+    @Test
+    public void testRejectsSharedDirectory() throws IOException {
+        if(!POSIX)
+            return;
+
+        Files.createDirectory(cache, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxrwxrwx")));
+        Files.setPosixFilePermissions(cache, PosixFilePermissions.fromString("rwxrwxrwx"));
+        try {
+            new JarResource("extract.txt", RESOURCE).file();
+            fail();
+        } catch (IOError e) {
+            assertTrue(e.getCause().getMessage().contains("writable by other users"));
+        }
+    }
+}
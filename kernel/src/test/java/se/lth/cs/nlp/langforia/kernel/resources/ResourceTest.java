@@ -0,0 +1,61 @@
+package se.lth.cs.nlp.langforia.kernel.resources;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ResourceTest {
+
+    /** Sparse file of the given size with the last byte set to 1 */
+    private static File sparse(long size) throws IOException {
+        File file = File.createTempFile("langforia-map", ".bin");
+        file.deleteOnExit();
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+            raf.seek(size - 1);
+            raf.write(1);
+        }
+        return file;
+    }
+
+    @Test
+    public void testSingleSegmentAtLimit() throws IOException {
+        File file = sparse(Integer.MAX_VALUE);
+        try {
+            ByteBuffer buffer = new FileResource(file).mappedRead();
+            assertEquals(Integer.MAX_VALUE, buffer.capacity());
+            assertEquals(1, buffer.get(Integer.MAX_VALUE - 1));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSegmentsAboveLimit() throws IOException {
+        File file = sparse(Integer.MAX_VALUE + 2L);
+        try {
+            List<ByteBuffer> segments = new FileResource(file).mappedSegments();
+            assertEquals(2, segments.size());
+            assertEquals(Resource.SEGMENT_SIZE, segments.get(0).capacity());
+            assertEquals(2, segments.get(1).capacity());
+            assertEquals(1, segments.get(1).get(1));
+
+            try {
+                new FileResource(file).mappedRead();
+                fail();
+            } catch (IOError e) {
+                //expected
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
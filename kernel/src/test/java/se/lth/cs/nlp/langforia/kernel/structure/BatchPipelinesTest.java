@@ -0,0 +1,97 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+
+import org.junit.Test;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.memstore.MemoryDocument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BatchPipelinesTest {
+
+    /** Marks documents, fails on "exception" and "error" and finishes in random order */
+    private static class TestPipelines extends Pipelines {
+        TestPipelines() {
+            super(null, null);
+        }
+
+        @Override
+        public Set<String> pipelines() {
+            return Collections.singleton("test");
+        }
+
+        @Override
+        public Document apply(String pipeline, Document doc) {
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(1000000));
+            if(doc.text().equals("exception"))
+                throw new IllegalStateException("failed");
+            if(doc.text().equals("error"))
+                throw new StackOverflowError();
+
+            doc.putProperty("applied", "true");
+            return doc;
+        }
+    }
+
+    private static List<Document> documents(int n) {
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            String text = i == 7 ? "exception" : i == 13 ? "error" : "doc " + i;
+            docs.add(new MemoryDocument(String.valueOf(i), text));
+        }
+        return docs;
+    }
+
+    private static void check(List<Document> docs, List<BatchPipelines.Result> results) {
+        assertEquals(docs.size(), results.size());
+        for (BatchPipelines.Result result : results) {
+            assertSame(docs.get(result.index()), result.document());
+            if(result.index() == 7) {
+                assertTrue(result.error() instanceof IllegalStateException);
+            } else if(result.index() == 13) {
+                assertTrue(result.error() instanceof StackOverflowError);
+            } else {
+                assertTrue(result.isSuccess());
+                assertEquals("true", result.document().getProperty("applied"));
+            }
+        }
+    }
+
+    @Test
+    public void testOrdered() {
+        List<Document> docs = documents(100);
+        List<BatchPipelines.Result> results = new BatchPipelines("xx", new TestPipelines()).apply("test", docs, 4);
+
+        check(docs, results);
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).index());
+        }
+    }
+
+    @Test
+    public void testUnordered() {
+        List<Document> docs = documents(100);
+        List<BatchPipelines.Result> results = new ArrayList<>();
+        new BatchPipelines("xx", new TestPipelines()).apply("test", docs, 4, false, results::add);
+
+        check(docs, results);
+        boolean[] seen = new boolean[docs.size()];
+        for (BatchPipelines.Result result : results) {
+            assertTrue(!seen[result.index()]);
+            seen[result.index()] = true;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownPipeline() {
+        new BatchPipelines("xx", new TestPipelines()).apply("missing", documents(1), 1);
+    }
+}
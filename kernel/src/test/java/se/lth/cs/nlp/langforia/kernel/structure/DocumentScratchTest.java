@@ -0,0 +1,41 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+
+import org.junit.Test;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.memstore.MemoryDocument;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentScratchTest {
+
+    @Test
+    public void testPutClear() {
+        Document doc = new MemoryDocument("doc", "text");
+        assertNull(DocumentScratch.get(doc, "a"));
+
+        DocumentScratch.put(doc, "a", 1);
+        DocumentScratch.put(doc, "b", "two");
+        assertEquals(Integer.valueOf(1), DocumentScratch.get(doc, "a"));
+        assertEquals("two", DocumentScratch.get(doc, "b"));
+
+        DocumentScratch.clear(doc, "a");
+        assertNull(DocumentScratch.get(doc, "a"));
+        assertTrue(doc.hasTag(DocumentScratch.TAG));
+
+        DocumentScratch.clear(doc, "b");
+        assertFalse(doc.hasTag(DocumentScratch.TAG));
+    }
+
+    @Test
+    public void testFinish() {
+        Document doc = new MemoryDocument("doc", "text");
+        DocumentScratch.put(doc, "a", 1);
+
+        PipelinePlan.of("test").finish(doc);
+        assertFalse(doc.hasTag(DocumentScratch.TAG));
+        assertNull(DocumentScratch.get(doc, "a"));
+    }
+}
@@ -0,0 +1,126 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+
+import org.junit.Test;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.graph.text.Sentence;
+import se.lth.cs.docforia.graph.text.Token;
+import se.lth.cs.docforia.memstore.MemoryDocument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelineGraphTest {
+
+    @Layers(writes = Token.class)
+    public static class WritesTokens implements LanguageTool {
+        @Override
+        public void apply(Document doc) {
+        }
+    }
+
+    @Layers(writes = Sentence.class)
+    public static class WritesSentences implements LanguageTool {
+        @Override
+        public void apply(Document doc) {
+        }
+    }
+
+    @Layers(reads = {Token.class, Sentence.class}, writes = Token.class)
+    public static class ReadsBoth implements LanguageTool {
+        @Override
+        public void apply(Document doc) {
+        }
+    }
+
+    public static class Undeclared implements LanguageTool {
+        @Override
+        public void apply(Document doc) {
+        }
+    }
+
+    @Test
+    public void testDependencies() {
+        PipelineGraph graph = PipelineGraph.of(WritesTokens.class, WritesSentences.class, ReadsBoth.class);
+        assertArrayEquals(new int[0], graph.dependencies(0));
+        assertArrayEquals(new int[0], graph.dependencies(1));
+        assertArrayEquals(new int[] {0, 1}, graph.dependencies(2));
+        assertFalse(graph.isSequential());
+
+        PipelineGraph barrier = PipelineGraph.of(WritesTokens.class, Undeclared.class, WritesSentences.class);
+        assertArrayEquals(new int[] {0}, barrier.dependencies(1));
+        assertArrayEquals(new int[] {1}, barrier.dependencies(2));
+        assertTrue(barrier.isSequential());
+    }
+
+    @Test
+    public void testSequentialByDefault() {
+        PipelineGraph graph = PipelineGraph.of(WritesTokens.class, WritesSentences.class, ReadsBoth.class);
+        Thread caller = Thread.currentThread();
+        List<Integer> order = new ArrayList<>();
+        graph.execute(i -> {
+            assertTrue(Thread.currentThread() == caller);
+            order.add(i);
+        });
+        assertEquals(Arrays.asList(0, 1, 2), order);
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        PipelineGraph graph = PipelineGraph.of(WritesTokens.class, WritesSentences.class, ReadsBoth.class);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            //Both independent stages must be running at the same time to pass the latch
+            CountDownLatch started = new CountDownLatch(2);
+            List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+            Document doc = new MemoryDocument("test", "Hello world.");
+
+            graph.executeConcurrent(doc, executor, i -> {
+                if(i < 2) {
+                    started.countDown();
+                    try {
+                        assertTrue(started.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                order.add(i);
+            });
+
+            assertEquals(3, order.size());
+            assertEquals(2, (int)order.get(2));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentFailure() {
+        PipelineGraph graph = PipelineGraph.of(WritesTokens.class, WritesSentences.class, ReadsBoth.class);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+            graph.executeConcurrent(new MemoryDocument("test", "Hello world."), executor, i -> {
+                if(i == 1)
+                    throw new IllegalStateException("stage 1");
+                applied.add(i);
+            });
+            fail("Expected the failure of stage 1");
+        } catch (IllegalStateException e) {
+            assertEquals("stage 1", e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+
+import com.google.inject.Guice;
+import org.junit.Test;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.graph.text.Token;
+import se.lth.cs.docforia.memstore.MemoryDocument;
+import se.lth.cs.nlp.langforia.kernel.AbstractNlpforiaModule;
+import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaRuntimeException;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelinePlanTest {
+
+    @Layers(writes = Token.class)
+    public static class Tokenizer implements LanguageTool {
+        int applied;
+
+        @Override
+        public void apply(Document doc) {
+            applied++;
+            int start = 0;
+            for (String word : doc.text().split(" ")) {
+                new Token(doc).setRange(start, start + word.length());
+                start += word.length() + 1;
+            }
+        }
+    }
+
+    @Layers(reads = Token.class, writes = Token.class)
+    public static class Tagger implements LanguageTool {
+        int applied;
+
+        @Override
+        public void apply(Document doc) {
+            applied++;
+            for (Token token : doc.nodes(Token.class)) {
+                token.setPartOfSpeech(token.text().toUpperCase());
+            }
+        }
+    }
+
+    public static class Undeclared implements LanguageTool {
+        @Override
+        public void apply(Document doc) {
+        }
+    }
+
+    private static int tokens(Document doc) {
+        int count = 0;
+        for (Token ignored : doc.nodes(Token.class)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static boolean hasProvenance(Document doc) {
+        for (Map.Entry<String, ?> property : doc.store().properties()) {
+            if(property.getKey().startsWith(Provenance.PROPERTY_PREFIX))
+                return true;
+        }
+        return false;
+    }
+
+    @Test
+    public void testApplyRecordsNoProvenance() {
+        PipelinePlan plan = PipelinePlan.of("test", new Tokenizer(), new Tagger());
+        Document doc = plan.apply(new MemoryDocument("doc", "a b c"), null);
+        assertEquals(3, tokens(doc));
+        assertFalse(hasProvenance(doc));
+    }
+
+    @Test
+    public void testIncremental() {
+        Tokenizer tokenizer = new Tokenizer();
+        Tagger tagger = new Tagger();
+        PipelinePlan plan = PipelinePlan.of("test", tokenizer, tagger);
+
+        Document doc = plan.applyIncremental(new MemoryDocument("doc", "a b c"), null, "xx", null);
+        assertEquals(3, tokens(doc));
+        assertEquals("", Provenance.get(doc, Tokenizer.class));
+
+        plan.applyIncremental(doc, null, "xx", null);
+        assertEquals(1, tokenizer.applied);
+        assertEquals(1, tagger.applied);
+
+        //Another tokenizer model replaces the tokens and the tagger follows.
+        Provenance.record(doc, Tokenizer.class, "old");
+        plan.applyIncremental(doc, null, "xx", null);
+        assertEquals(2, tokenizer.applied);
+        assertEquals(2, tagger.applied);
+        assertEquals(3, tokens(doc));
+        for (Token token : doc.nodes(Token.class)) {
+            assertEquals(token.text().toUpperCase(), token.getProperty("pos"));
+        }
+
+        //Only the tagger is stale, the tokens stay.
+        Provenance.record(doc, Tagger.class, "old");
+        plan.applyIncremental(doc, null, "xx", null);
+        assertEquals(2, tokenizer.applied);
+        assertEquals(3, tagger.applied);
+        assertEquals(3, tokens(doc));
+    }
+
+    @Test
+    public void testIncrementalAfterApply() {
+        Tokenizer tokenizer = new Tokenizer();
+        PipelinePlan plan = PipelinePlan.of("test", tokenizer, new Tagger());
+
+        Document doc = plan.apply(new MemoryDocument("doc", "a b c"), null);
+        plan.applyIncremental(doc, null, "xx", null);
+        assertEquals(2, tokenizer.applied);
+        assertEquals(3, tokens(doc));
+    }
+
+    @Test
+    public void testUndeclaredIsNotReapplied() {
+        PipelinePlan plan = PipelinePlan.of("test", new Undeclared());
+        Document doc = plan.applyIncremental(new MemoryDocument("doc", "a"), null, "xx", null);
+        assertEquals("", Provenance.get(doc, Undeclared.class));
+
+        Provenance.record(doc, Undeclared.class, "old");
+        try {
+            plan.applyIncremental(doc, null, "xx", null);
+            fail();
+        } catch (LangforiaRuntimeException e) {
+            assertEquals("old", Provenance.get(doc, Undeclared.class));
+        }
+
+        assertNull(Provenance.get(new MemoryDocument("doc", "a"), Undeclared.class));
+    }
+
+    private static String properties(boolean enabled) {
+        return PipelinePlan.properties(Guice.createInjector(new AbstractNlpforiaModule() {
+            @Override
+            protected void configure() {
+                bindProperty("test.enabled", enabled);
+                bindProperty("test.name", "name");
+            }
+        }).getAllBindings());
+    }
+
+    @Test
+    public void testPropertiesFingerprint() {
+        assertEquals(properties(true), properties(true));
+        assertNotEquals(properties(true), properties(false));
+        assertTrue(properties(true).contains("test.name"));
+    }
+}
@@ -0,0 +1,147 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+
+import org.junit.Test;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.graph.text.Sentence;
+import se.lth.cs.docforia.graph.text.Token;
+import se.lth.cs.docforia.memstore.MemoryDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SentenceTokenIndexTest {
+
+    private static Document document() {
+        Document doc = new MemoryDocument("doc", "A b. C d e.");
+        new Sentence(doc).setRange(0, 4);
+        new Sentence(doc).setRange(5, 11);
+        int[][] tokens = {{0, 1}, {2, 3}, {3, 4}, {5, 6}, {7, 8}, {9, 10}, {10, 11}};
+        for (int[] token : tokens) {
+            new Token(doc).setRange(token[0], token[1]);
+        }
+        return doc;
+    }
+
+    private static List<String> texts(List<Token> tokens) {
+        List<String> texts = new ArrayList<>();
+        for (Token token : tokens) {
+            texts.add(token.text());
+        }
+        return texts;
+    }
+
+    @Test
+    public void testOf() {
+        Document doc = document();
+        SentenceTokenIndex index = SentenceTokenIndex.of(doc);
+
+        assertEquals(2, index.size());
+        assertEquals(7, index.tokenCount());
+        assertEquals("[A, b, .]", texts(index.tokens(0)).toString());
+        assertEquals("[C, d, e, .]", texts(index.tokens(1)).toString());
+        assertEquals(3, index.offset(1));
+        assertEquals(1, index.indexOf(index.sentence(1)));
+        assertTrue(index.isCurrent(doc));
+
+        assertSame(index, SentenceTokenIndex.of(doc));
+        assertSame(index, SentenceTokenIndex.cached(doc));
+    }
+
+    @Test
+    public void testLayerSizeChanged() {
+        Document doc = document();
+        SentenceTokenIndex index = SentenceTokenIndex.of(doc);
+
+        new Token(doc).setRange(7, 10);
+        assertFalse(index.isCurrent(doc));
+
+        SentenceTokenIndex rebuilt = SentenceTokenIndex.of(doc);
+        assertNotSame(index, rebuilt);
+        assertEquals(8, rebuilt.tokenCount());
+        assertTrue(rebuilt.isCurrent(doc));
+    }
+
+    @Test
+    public void testRangeMoved() {
+        Document doc = document();
+        SentenceTokenIndex index = SentenceTokenIndex.of(doc);
+
+        index.sentence(1).setRange(4, 11);
+        assertFalse(index.isCurrent(doc));
+    }
+
+    @Test
+    public void testTokensReplaced() {
+        Document doc = document();
+        SentenceTokenIndex index = SentenceTokenIndex.of(doc);
+
+        //Same number of tokens at the same positions, but different nodes
+        Token old = index.token(4);
+        doc.remove(old);
+        new Token(doc).setRange(old.getStart(), old.getEnd());
+        assertFalse(index.isCurrent(doc));
+
+        SentenceTokenIndex rebuilt = SentenceTokenIndex.of(doc);
+        assertNotSame(index, rebuilt);
+        assertNotSame(old, rebuilt.token(4));
+        assertEquals("d", rebuilt.token(4).text());
+        assertTrue(rebuilt.isCurrent(doc));
+    }
+
+    @Test
+    public void testSentencesReplaced() {
+        Document doc = document();
+        SentenceTokenIndex index = SentenceTokenIndex.of(doc);
+
+        Sentence old = index.sentence(0);
+        doc.remove(old);
+        new Sentence(doc).setRange(old.getStart(), old.getEnd());
+        assertFalse(index.isCurrent(doc));
+    }
+
+    @Test
+    public void testNodesUntouched() {
+        Document doc = new MemoryDocument("doc", "A b.");
+        new Token(doc).setRange(0, 1);
+        SentenceTokenIndex index = SentenceTokenIndex.of(doc);
+
+        //No sentences: the Sentence layer is not created, and the nodes carry no tags
+        assertEquals(0, index.size());
+        assertFalse(DocumentLayers.hasNodeLayer(doc, Sentence.class));
+        for (Token token : doc.nodes(Token.class)) {
+            assertFalse(token.hasTag(SentenceTokenIndex.TAG));
+        }
+        assertTrue(index.isCurrent(doc));
+        assertFalse(DocumentLayers.hasNodeLayer(doc, Sentence.class));
+    }
+
+    @Test
+    public void testInvalidate() {
+        Document doc = document();
+        SentenceTokenIndex index = SentenceTokenIndex.of(doc);
+
+        SentenceTokenIndex.invalidate(doc);
+        assertNull(SentenceTokenIndex.cached(doc));
+        assertFalse(doc.hasTag(SentenceTokenIndex.TAG));
+        assertTrue(index.isCurrent(doc));
+        assertNotSame(index, SentenceTokenIndex.of(doc));
+    }
+
+    @Test
+    public void testFinish() {
+        Document doc = document();
+        SentenceTokenIndex.of(doc);
+        TokenScratch.of(doc, "test");
+
+        PipelinePlan.of("test").finish(doc);
+        assertFalse(doc.hasTag(SentenceTokenIndex.TAG));
+        assertFalse(doc.hasTag(TokenScratch.TAG));
+    }
+}
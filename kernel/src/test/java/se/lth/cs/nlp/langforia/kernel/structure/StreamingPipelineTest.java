@@ -0,0 +1,94 @@
+package se.lth.cs.nlp.langforia.kernel.structure;
+
+import org.junit.Test;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.memstore.MemoryDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamingPipelineTest {
+
+    public static class Upper implements LanguageTool {
+        @Override
+        public void apply(Document doc) {
+            doc.putProperty("upper", doc.text().toUpperCase());
+        }
+    }
+
+    public static class FailsOnError implements LanguageTool {
+        @Override
+        public void apply(Document doc) {
+            if(doc.text().equals("error"))
+                throw new AssertionError("tool failed");
+            if(doc.text().equals("exception"))
+                throw new IllegalStateException("tool failed");
+        }
+    }
+
+    private static List<Document> docs(String...texts) {
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < texts.length; i++) {
+            docs.add(new MemoryDocument("doc" + i, texts[i]));
+        }
+        return docs;
+    }
+
+    private static boolean hasStreamThreads() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if(thread.getName().startsWith("langforia-stream-test-") && thread.isAlive())
+                return true;
+        }
+        return false;
+    }
+
+    @Test(timeout = 10000)
+    public void testToolThrows() {
+        PipelinePlan plan = PipelinePlan.of("test", new FailsOnError(), new Upper());
+        List<BatchPipelines.Result> results = new ArrayList<>();
+        try(StreamingPipeline pipeline = new StreamingPipeline(plan, "test", null, 1, 2, 1)) {
+            pipeline.apply(docs("a", "error", "b", "exception", "c"), results::add);
+        }
+
+        assertEquals(5, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).index());
+        }
+
+        assertNull(results.get(0).error());
+        assertEquals("A", results.get(0).document().getProperty("upper"));
+        assertTrue(results.get(1).error() instanceof AssertionError);
+        assertFalse(results.get(1).document().hasProperty("upper"));
+        assertEquals("B", results.get(2).document().getProperty("upper"));
+        assertTrue(results.get(3).error() instanceof IllegalStateException);
+        assertEquals("C", results.get(4).document().getProperty("upper"));
+        assertFalse(hasStreamThreads());
+    }
+
+    @Test(timeout = 10000)
+    public void testConsumerThrows() {
+        PipelinePlan plan = PipelinePlan.of("test", new Upper(), new Upper());
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            docs.add(new MemoryDocument("doc" + i, "text"));
+        }
+
+        StreamingPipeline pipeline = new StreamingPipeline(plan, "test", null, 1);
+        try {
+            pipeline.apply(docs, result -> {
+                throw new IllegalStateException("consumer failed");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("consumer failed", e.getMessage());
+        }
+
+        assertFalse(hasStreamThreads());
+    }
+}
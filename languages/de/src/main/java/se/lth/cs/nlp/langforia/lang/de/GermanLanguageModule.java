@@ -44,6 +44,7 @@ public class GermanLanguageModule extends LanguageModule {
         super.configure();
 
         configureLucene();
+        configureCompounder();
         configureFullpipeline();
     }
 
@@ -53,6 +54,12 @@ public class GermanLanguageModule extends LanguageModule {
         bind(CharArraySet.class).annotatedWith(Models.named(LuceneNormalizer.LUCENE_STOP_WORDS_MODEL)).toInstance(GermanAnalyzer.getDefaultStopSet());
     }
 
+    protected void configureCompounder() {
+        bind(DictionaryCompounder.class).in(Singleton.class);
+        bind(Compounder.class).to(DictionaryCompounder.class);
+        bindModel(DictionaryCompounder.MODEL_ID, new JarResource("compounds.txt", "models/de/compounds.txt"));
+    }
+
     @Provides
     @Singleton
     @NoStopWordFiltering
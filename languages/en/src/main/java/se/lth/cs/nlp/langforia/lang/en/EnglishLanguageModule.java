@@ -52,8 +52,8 @@ public class EnglishLanguageModule extends LanguageModule {
     }
 
     protected void configureSegmentation() {
-        bind(WordSet.class).to(SimpleWordSet.class).in(Singleton.class);
-        bindModel(SimpleWordSet.MODEL_ID, new JarResource("wordlist.txt", "models/en/wordlist.txt"));
+        bind(WordSet.class).to(CompactWordSet.class).in(Singleton.class);
+        bindModel(CompactWordSet.MODEL_ID, new JarResource("wordlist.txt", "models/en/wordlist.txt"));
 
         bind(Tokenizer.class).to(StanfordPTBTokenizer.class).in(Singleton.class);
         bind(SentenceSplitter.class).to(StanfordCoreNlpSegmenter.class).in(Singleton.class);
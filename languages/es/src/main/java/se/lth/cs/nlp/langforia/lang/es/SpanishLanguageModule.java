@@ -54,8 +54,8 @@ public class SpanishLanguageModule extends LanguageModule {
     }
 
     protected void configureSegmentation() {
-        bind(WordSet.class).to(SimpleWordSet.class).in(Singleton.class);
-        bindModel(SimpleWordSet.MODEL_ID, new JarResource("words.txt", "models/es/words.txt"));
+        bind(WordSet.class).to(CompactWordSet.class).in(Singleton.class);
+        bindModel(CompactWordSet.MODEL_ID, new JarResource("words.txt", "models/es/words.txt"));
         bind(MaltParser.class).in(Singleton.class);
     }
 
@@ -49,6 +49,7 @@ public class SwedishLanguageModule extends LanguageModule {
         configureLucene();
         configureMaltparser();
         configureStagger();
+        configureCompounder();
         configureFullpipeline();
     }
 
@@ -70,6 +71,12 @@ public class SwedishLanguageModule extends LanguageModule {
         bind(CharArraySet.class).annotatedWith(Models.named(LuceneNormalizer.LUCENE_STOP_WORDS_MODEL)).toInstance(SwedishAnalyzer.getDefaultStopSet());
     }
 
+    protected void configureCompounder() {
+        bind(DictionaryCompounder.class).in(Singleton.class);
+        bind(Compounder.class).to(DictionaryCompounder.class);
+        bindModel(DictionaryCompounder.MODEL_ID, new JarResource("compounds.txt", "models/sv/compounds.txt"));
+    }
+
     protected void configureMaltparser() {
         bind(MaltParser.class).in(Singleton.class);
         bind(DependencyGrammarParser.class).to(MaltParser.class);
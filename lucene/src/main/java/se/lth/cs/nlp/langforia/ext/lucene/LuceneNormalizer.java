@@ -25,7 +25,9 @@ import se.lth.cs.docforia.query.NodeTVar;
 import se.lth.cs.docforia.query.StreamUtils;
 import se.lth.cs.nlp.langforia.kernel.Model;
 import se.lth.cs.nlp.langforia.kernel.structure.TextNormalizer;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
 
+@Layers(reads = Token.class, writes = Token.class)
 public class LuceneNormalizer implements TextNormalizer {
 
 	private final CharArraySet stopWords;
@@ -25,12 +25,10 @@ import se.lth.cs.docforia.Document;
 import se.lth.cs.docforia.graph.TokenProperties;
 import se.lth.cs.docforia.graph.text.Sentence;
 import se.lth.cs.docforia.graph.text.Token;
-import se.lth.cs.docforia.query.NodeTVar;
-import se.lth.cs.docforia.query.Proposition;
-import se.lth.cs.docforia.query.PropositionGroup;
-import se.lth.cs.docforia.query.QueryCollectors;
 import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaRuntimeException;
 import se.lth.cs.nlp.langforia.kernel.structure.Stemmer;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
+import se.lth.cs.nlp.langforia.kernel.structure.SentenceLocalTool;
 
 
 import java.io.IOException;
@@ -38,7 +36,8 @@ import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
-public class LuceneStemmer implements Stemmer {
+@Layers(reads = {Token.class, Sentence.class}, writes = Token.class)
+public class LuceneStemmer implements Stemmer, SentenceLocalTool<String[]> {
 
 	private final Analyzer analyzer;
 	
@@ -48,70 +47,57 @@ public class LuceneStemmer implements Stemmer {
 	}
 	
 	@Override
-	public void apply(Document doc) {
-        try 
-        {
-			NodeTVar<Token> T = Token.var();
-			NodeTVar<Sentence> S = Sentence.var();
-
-			List<PropositionGroup> groups
-					= doc.select(S, T)
-					.where(T).coveredBy(S)
-					.stream()
-					.collect(QueryCollectors.groupBy(doc, S).orderByKey(S).orderByValue(T).collector());
-
-			for (PropositionGroup group : groups)
-			{
-				List<Proposition> tokens = group.values();
-
-				ArrayList<Integer> ranges = new ArrayList<Integer>();
-				boolean first = true;
+	public String[] process(Document doc, Sentence sentence, List<Token> tokens) {
+		try
+		{
+			ArrayList<Integer> ranges = new ArrayList<Integer>();
+			int start = sentence.getStart();
+
+			for(Token tok : tokens) {
+				ranges.add(tok.getStart()-start);
+				ranges.add(tok.getEnd()-start);
+			}
 
-                int start = group.key(S).getStart();
+			String[] stems = new String[tokens.size()];
 
-				for(Proposition prop : tokens) {
-					Token tok = prop.get(T);
+			TokenStream stream = analyzer.tokenStream("contents", new StringReader(sentence.text()));
+			OffsetAttribute offsetAttribute = stream.addAttribute(OffsetAttribute.class);
+			CharTermAttribute charTermAttribute = stream.addAttribute(CharTermAttribute.class);
 
-					/*if(first)
-						first = false;
-					else
-						sb.append(" ");*/
+			stream.reset();
+			int i = 0;
 
-					ranges.add(tok.getStart()-start);
-                    ranges.add(tok.getEnd()-start);
+			while (stream.incrementToken() && i < ranges.size())
+			{
+				while(i < ranges.size() && offsetAttribute.startOffset() >= ranges.get(i+1)) {
+					i += 2;
 				}
 
-				TokenStream stream = analyzer.tokenStream("contents", new StringReader(group.key(S).text()));
-				OffsetAttribute offsetAttribute = stream.addAttribute(OffsetAttribute.class);
-				CharTermAttribute charTermAttribute = stream.addAttribute(CharTermAttribute.class);
-
-				stream.reset();
-				int i = 0;
-
-				while (stream.incrementToken() && i < ranges.size())
-				{
-					while(i < ranges.size() && offsetAttribute.startOffset() >= ranges.get(i+1)) {
-						i += 2;
-					}
-
-					if(i >= ranges.size()) {
-						break;
-					}
+				if(i >= ranges.size()) {
+					break;
+				}
 
-					if(ranges.get(i) <= offsetAttribute.startOffset() && ranges.get(i+1) >= offsetAttribute.endOffset()) {
-						String stem = tokens.get(i / 2).get(T).getPropertyOrDefault(TokenProperties.STEM, "");
-						if(stem.length() > 0)
-							stem += " ";
+				if(ranges.get(i) <= offsetAttribute.startOffset() && ranges.get(i+1) >= offsetAttribute.endOffset()) {
+					String stem = stems[i/2] != null ? stems[i/2] : tokens.get(i/2).getPropertyOrDefault(TokenProperties.STEM, "");
+					if(stem.length() > 0)
+						stem += " ";
 
-						tokens.get(i/2).get(T).putProperty(TokenProperties.STEM, stem + charTermAttribute.toString());
-						//i += 2;
-					}
+					stems[i/2] = stem + charTermAttribute.toString();
 				}
-				stream.close();
 			}
-        }
-        catch(IOException ex) {
-            throw new LangforiaRuntimeException(ex);
-        }
+			stream.close();
+			return stems;
+		}
+		catch(IOException ex) {
+			throw new LangforiaRuntimeException(ex);
+		}
+	}
+
+	@Override
+	public void commit(Document doc, Sentence sentence, List<Token> tokens, String[] stems) {
+		for (int i = 0; i < stems.length; i++) {
+			if(stems[i] != null)
+				tokens.get(i).putProperty(TokenProperties.STEM, stems[i]);
+		}
 	}
 }
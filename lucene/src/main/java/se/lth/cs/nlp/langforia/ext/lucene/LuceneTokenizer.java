@@ -27,11 +27,13 @@ import se.lth.cs.docforia.graph.text.Token;
 import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaRuntimeException;
 import se.lth.cs.nlp.langforia.kernel.structure.LanguageTool;
 import se.lth.cs.nlp.langforia.kernel.structure.Tokenizer;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
 
 import java.io.IOException;
 import java.io.StringReader;
 
 
+@Layers(writes = Token.class)
 public class LuceneTokenizer implements Tokenizer, LanguageTool {
 
 	private final Analyzer analyzer;
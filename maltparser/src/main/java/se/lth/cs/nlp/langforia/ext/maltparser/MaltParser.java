@@ -26,20 +26,20 @@ import se.lth.cs.docforia.Document;
 import se.lth.cs.docforia.graph.text.DependencyRelation;
 import se.lth.cs.docforia.graph.text.Sentence;
 import se.lth.cs.docforia.graph.text.Token;
-import se.lth.cs.docforia.query.NodeTVar;
-import se.lth.cs.docforia.query.PropositionGroup;
-import se.lth.cs.docforia.query.QueryCollectors;
 import se.lth.cs.nlp.langforia.kernel.Model;
 import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaRuntimeException;
 import se.lth.cs.nlp.langforia.kernel.resources.Resource;
 import se.lth.cs.nlp.langforia.kernel.LanguageCode;
 import se.lth.cs.nlp.langforia.kernel.structure.DependencyGrammarParser;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
+import se.lth.cs.nlp.langforia.kernel.structure.SentenceLocalTool;
 import static se.lth.cs.docforia.graph.TokenProperties.*;
 
 import java.io.IOError;
 import java.util.List;
 
-public class MaltParser implements DependencyGrammarParser {
+@Layers(reads = {Token.class, Sentence.class}, writes = {DependencyRelation.class, Token.class})
+public class MaltParser implements DependencyGrammarParser, SentenceLocalTool<MaltParser.Parse> {
 
 	public static final String MODEL_ID = "ext.maltparser.model";
 	private final ConcurrentMaltParserModel model;
@@ -61,49 +61,55 @@ public class MaltParser implements DependencyGrammarParser {
 		logger.info("Completed loading maltparser model " + modelpath.name() + " for lang " + langcode + ".");
 	}
 	
-	@Override
-	public void apply(Document doc) {
-		NodeTVar<Token> T = Token.var();
-		NodeTVar<Sentence> S = Sentence.var();
-		List<PropositionGroup> groups = doc.select(T, S)
-				.where(T).coveredBy(S)
-				.stream()
-				.collect(QueryCollectors.groupBy(doc, S).orderByKey(S).orderByValue(T).collector());
+	/** Parse of a sentence, heads are sentence token indices or -1 for root */
+	public static class Parse {
+		private final int[] heads;
+		private final String[] relations;
 
-		for (PropositionGroup proposition : groups)
-		{
-			String[] sentence = new String[proposition.size()];
+		public Parse(int[] heads, String[] relations) {
+			this.heads = heads;
+			this.relations = relations;
+		}
+	}
 
-			//1    Innebär                  	 _ 	 VB  	 VB  	 PRS|AKT                         	 9  	 AA   	 _ 	 _
-			for(int i = 0; i < proposition.size(); i++) {
-				Token tok = proposition.value(i, T);
+	@Override
+	public Parse process(Document doc, Sentence s, List<Token> tokens) {
+		String[] sentence = new String[tokens.size()];
 
-				StringBuilder sb = new StringBuilder();
-				sb.append(i+1).append("\t");
-				sb.append(tok.text()).append("\t");
-				sb.append(tok.getPropertyOrDefault(LEMMA, "_")).append("\t");
-				sb.append(tok.getPropertyOrDefault(POS, "_")).append("\t");
-				sb.append(tok.getPropertyOrDefault(POS, "_")).append("\t");
-				sb.append(tok.getPropertyOrDefault(FEATS, "_")).append("\t");
-				sentence[i] = sb.toString();
-			}
+		//1    Innebär                  	 _ 	 VB  	 VB  	 PRS|AKT                         	 9  	 AA   	 _ 	 _
+		for(int i = 0; i < tokens.size(); i++) {
+			Token tok = tokens.get(i);
 
-			try {
-				String[] output = model.parseTokens(sentence);
-				for(int i = 0; i < output.length; i++) {
-					Token tok = proposition.value(i).get(T);
+			StringBuilder sb = new StringBuilder();
+			sb.append(i+1).append("\t");
+			sb.append(tok.text()).append("\t");
+			sb.append(tok.getPropertyOrDefault(LEMMA, "_")).append("\t");
+			sb.append(tok.getPropertyOrDefault(POS, "_")).append("\t");
+			sb.append(tok.getPropertyOrDefault(POS, "_")).append("\t");
+			sb.append(tok.getPropertyOrDefault(FEATS, "_")).append("\t");
+			sentence[i] = sb.toString();
+		}
 
-					String[] parts = output[i].split("\t");
-					int headIndex = Integer.parseInt(parts[6])-1;
-					/*tok.putProperty(HEAD, parts[6]);
-					tok.putProperty(DEPREL, parts[7]);*/
+		try {
+			String[] output = model.parseTokens(sentence);
+			int[] heads = new int[output.length];
+			String[] relations = new String[output.length];
+			for(int i = 0; i < output.length; i++) {
+				String[] parts = output[i].split("\t");
+				heads[i] = Integer.parseInt(parts[6])-1;
+				relations[i] = parts[7];
+			}
+			return new Parse(heads, relations);
+		} catch (MaltChainedException e) {
+			throw new LangforiaRuntimeException(langcode, e);
+		}
+	}
 
-					if(headIndex != -1) {
-						new DependencyRelation(doc).connect(tok, proposition.value(headIndex, T)).setRelation(parts[7]);
-					}
-				}
-			} catch (MaltChainedException e) {
-				throw new LangforiaRuntimeException(langcode, e);
+	@Override
+	public void commit(Document doc, Sentence s, List<Token> tokens, Parse parse) {
+		for(int i = 0; i < parse.heads.length; i++) {
+			if(parse.heads[i] != -1) {
+				new DependencyRelation(doc).connect(tokens.get(i), tokens.get(parse.heads[i])).setRelation(parse.relations[i]);
 			}
 		}
 	}
@@ -24,18 +24,17 @@ import se.lth.cs.docforia.Document;
 import se.lth.cs.docforia.graph.text.NamedEntity;
 import se.lth.cs.docforia.graph.text.Sentence;
 import se.lth.cs.docforia.graph.text.Token;
-import se.lth.cs.docforia.query.NodeTVar;
-import se.lth.cs.docforia.query.PropositionGroup;
-import se.lth.cs.docforia.query.QueryCollectors;
 import se.lth.cs.nlp.langforia.kernel.Model;
 import se.lth.cs.nlp.langforia.kernel.resources.Resource;
 import se.lth.cs.nlp.langforia.kernel.structure.NamedEntityRecognizer;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
+import se.lth.cs.nlp.langforia.kernel.structure.SentenceTokenIndex;
 
 
 import java.io.IOError;
 import java.io.IOException;
-import java.util.List;
 
+@Layers(reads = {Token.class, Sentence.class}, writes = NamedEntity.class)
 public class OpenNlpNameFinder implements NamedEntityRecognizer {
 
     public static final String LOCATION_MODEL = "ext.opennlp.name.location.model";
@@ -74,29 +73,23 @@ public class OpenNlpNameFinder implements NamedEntityRecognizer {
     public void apply(Document doc) {
         NameFinderME[] nameFinderMEs = finders.get();
 
-        for(int k = 0; k < nameFinderMEs.length; k++) {
-            NodeTVar<Token> T = Token.var();
-            NodeTVar<Sentence> S = Sentence.var();
-
-            List<PropositionGroup> query =
-                    doc.select(S, T)
-                       .where(T)
-                       .coveredBy(S)
-                       .stream()
-                       .collect(QueryCollectors.groupBy(doc, S).orderByKey(S).orderByValue(T).collector());
-
-            for (PropositionGroup proposition : query) {
-                String[] tokens = new String[proposition.size()];
-
-                int i = 0;
-                for (Token item : proposition.nodes(T)) {
-                    tokens[i++] = item.text();
-                }
+        SentenceTokenIndex index = SentenceTokenIndex.of(doc);
+        String[][] sentences = new String[index.size()][];
+        for (int s = 0; s < index.size(); s++) {
+            String[] tokens = new String[index.offset(s+1) - index.offset(s)];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = doc.text(index.tokenStart(index.offset(s) + i), index.tokenEnd(index.offset(s) + i));
+            }
+            sentences[s] = tokens;
+        }
 
-                Span[] spans = nameFinderMEs[k].find(tokens);
+        for(int k = 0; k < nameFinderMEs.length; k++) {
+            for (int s = 0; s < sentences.length; s++) {
+                int offset = index.offset(s);
+                Span[] spans = nameFinderMEs[k].find(sentences[s]);
                 for (Span span : spans) {
                     new NamedEntity(doc).setLabel(span.getType())
-                                        .setRange(proposition.value(span.getStart(), T).getStart(), proposition.value(span.getEnd() - 1, T).getEnd());
+                                        .setRange(index.tokenStart(offset + span.getStart()), index.tokenEnd(offset + span.getEnd() - 1));
                 }
             }
         }
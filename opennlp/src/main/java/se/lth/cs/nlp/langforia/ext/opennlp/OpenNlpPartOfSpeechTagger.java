@@ -25,20 +25,20 @@ import se.lth.cs.docforia.Document;
 import se.lth.cs.docforia.graph.TokenProperties;
 import se.lth.cs.docforia.graph.text.Sentence;
 import se.lth.cs.docforia.graph.text.Token;
-import se.lth.cs.docforia.query.NodeTVar;
-import se.lth.cs.docforia.query.PropositionGroup;
-import se.lth.cs.docforia.query.QueryCollectors;
 import se.lth.cs.nlp.langforia.kernel.Model;
 import se.lth.cs.nlp.langforia.kernel.resources.Resource;
 import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaException;
 import se.lth.cs.nlp.langforia.kernel.LanguageCode;
 import se.lth.cs.nlp.langforia.kernel.structure.PartOfSpeechTagger;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
+import se.lth.cs.nlp.langforia.kernel.structure.SentenceLocalTool;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 
-public class OpenNlpPartOfSpeechTagger implements PartOfSpeechTagger {
+@Layers(reads = {Token.class, Sentence.class}, writes = Token.class)
+public class OpenNlpPartOfSpeechTagger implements PartOfSpeechTagger, SentenceLocalTool<String[]> {
 	private POSModel model;
 
 	public final static String MODEL_ID = "ext.opennlp.pos.model";
@@ -66,31 +66,20 @@ public class OpenNlpPartOfSpeechTagger implements PartOfSpeechTagger {
         }
     }
 	
-	public void apply(Document doc) {
-		NodeTVar<Token> T = Token.var();
-		NodeTVar<Sentence> S = Sentence.var();
-
-        POSTagger posTagger = taggers.get();
-
-        List<PropositionGroup> query =
-				 doc.select(S, T)
-					.where(T)
-					.coveredBy(S)
-					.stream()
-					.collect(QueryCollectors.groupBy(doc, S).orderByKey(S).orderByValue(T).collector());
-
-		for (PropositionGroup proposition : query) {
-			String[] tokens = new String[proposition.size()];
+	@Override
+	public String[] process(Document doc, Sentence sentence, List<Token> tokens) {
+		String[] words = new String[tokens.size()];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = tokens.get(i).text();
+		}
 
-			int i = 0;
-			for (Token item : proposition.nodes(T)) {
-				tokens[i++] = item.text();
-			}
+		return taggers.get().tag(words);
+	}
 
-			String[] postags = posTagger.tag(tokens);
-			for(i = 0; i <  proposition.size(); i++) {
-				proposition.value(i, T).putProperty(TokenProperties.POS, postags[i]);
-			}
+	@Override
+	public void commit(Document doc, Sentence sentence, List<Token> tokens, String[] postags) {
+		for (int i = 0; i < postags.length; i++) {
+			tokens.get(i).putProperty(TokenProperties.POS, postags[i]);
 		}
 	}
 }
@@ -25,10 +25,12 @@ import se.lth.cs.docforia.graph.text.Sentence;
 import se.lth.cs.nlp.langforia.kernel.Model;
 import se.lth.cs.nlp.langforia.kernel.resources.Resource;
 import se.lth.cs.nlp.langforia.kernel.structure.SentenceSplitter;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
 import java.io.IOError;
 import java.io.IOException;
 import java.io.InputStream;
 
+@Layers(writes = Sentence.class)
 public class OpenNlpSentenceSplitter implements SentenceSplitter {
 
     public static final String MODEL_ID = "ext.opennlp.ssplit.model";
@@ -25,9 +25,11 @@ import se.lth.cs.docforia.graph.text.Token;
 import se.lth.cs.nlp.langforia.kernel.Model;
 import se.lth.cs.nlp.langforia.kernel.resources.Resource;
 import se.lth.cs.nlp.langforia.kernel.structure.Tokenizer;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
 import java.io.IOError;
 import java.io.IOException;
 
+@Layers(writes = Token.class)
 public class OpenNlpTokenizer implements Tokenizer {
     private final TokenizerModel model;
     public static final String MODEL_ID = "ext.opennlp.tokenize.model";
@@ -22,13 +22,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.lth.cs.docforia.Document;
 import se.lth.cs.docforia.graph.text.*;
-import se.lth.cs.docforia.query.NodeTVar;
-import se.lth.cs.docforia.query.PropositionGroup;
-import se.lth.cs.docforia.query.QueryCollectors;
 import se.lth.cs.nlp.langforia.kernel.Model;
 import se.lth.cs.nlp.langforia.kernel.resources.Resource;
 import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaException;
 import se.lth.cs.nlp.langforia.kernel.LanguageCode;
+import se.lth.cs.nlp.langforia.kernel.structure.DocumentScratch;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
+import se.lth.cs.nlp.langforia.kernel.structure.SentenceLocalTool;
+import se.lth.cs.nlp.langforia.kernel.structure.SentenceParallel;
+import se.lth.cs.nlp.langforia.kernel.structure.TokenScratch;
 import se.su.ling.stagger.*;
 import se.su.ling.stagger.Token;
 
@@ -42,13 +44,25 @@ public class Stagger {
 
 	public static final String MODEL_ID = "lang.common.Stagger";
 
+	/** Name of the {@link DocumentScratch} value holding the tokenizer output until the pipeline has finished */
+	private static final String SEGMENTATION = "stagger.segmentation";
+	/** Name of the {@link TokenScratch} holding the tagged tokens until all stages have used them */
+	private static final String SCRATCH = "stagger.tagged-tokens";
+
 	private Logger logger;
 	private Tagger tagger;
+	private StaggerPool pool;
 	private String lang;
 	private TagSet posTagSet;
 	private TagSet neTagSet;
 	private TagSet neTagTypeSet;
 
+	/** Decoded tag names indexed by tag id, POS tags are split into the tag and its features */
+	private String[] posNames;
+	private String[] posFeats;
+	private String[] neNames;
+	private String[] neTypeNames;
+
 	private Stagger(String lang) {
 		if(lang == null)
 			throw new NullPointerException("lang must not be null!");
@@ -63,24 +77,77 @@ public class Stagger {
 
 		Logger logger = LoggerFactory.getLogger(Stagger.class);
 
-		logger.info("Loading stagger model " + path.name());
-		try
-		{
-			ObjectInputStream modelReader = new ObjectInputStream(new BufferedInputStream(new BZip2CompressorInputStream(path.binaryRead()), 1024*1024));
-			tagger = (Tagger)modelReader.readObject();
-			modelReader.close();
+		Resource snapshot = path.sibling(StaggerSnapshot.snapshotName(path.name()));
+		if(snapshot != null && StaggerSnapshot.isSnapshot(snapshot)) {
+			logger.info("Loading stagger snapshot " + snapshot.name());
+			try {
+				tagger = StaggerSnapshot.read(snapshot);
+			}
+			catch(Exception ex) {
+				logger.warn("Failed to load stagger snapshot " + snapshot.name() + ", falling back to the model.", ex);
+			}
 		}
-		catch(Exception ex)
-		{
-			throw new LangforiaException("Failed to load stagger model.", ex);
+
+		if(tagger == null) {
+			logger.info("Loading stagger model " + path.name());
+			try
+			{
+				ObjectInputStream modelReader = new ObjectInputStream(new BufferedInputStream(new BZip2CompressorInputStream(path.binaryRead()), 1024*1024));
+				tagger = (Tagger)modelReader.readObject();
+				modelReader.close();
+			}
+			catch(Exception ex)
+			{
+				throw new LangforiaException("Failed to load stagger model.", ex);
+			}
 		}
 
 		posTagSet = tagger.getTaggedData().getPosTagSet();
 		neTagSet = tagger.getTaggedData().getNETagSet();
 		neTagTypeSet = tagger.getTaggedData().getNETypeTagSet();
+		buildTagTables();
+		pool = new StaggerPool(tagger, StaggerPool.defaultCapacity());
 		logger.info("Stagger model loaded.");
 	}
 
+	private static String[] tagNames(TagSet tagSet) throws LangforiaException {
+		if(tagSet == null)
+			return new String[0];
+
+		String[] names = new String[tagSet.size()];
+		try {
+			for (int i = 0; i < names.length; i++) {
+				names[i] = tagSet.getTagName(i).intern();
+			}
+		} catch (TagNameException e) {
+			throw new LangforiaException("Failed to read stagger tag set.", e);
+		}
+		return names;
+	}
+
+	private void buildTagTables() throws LangforiaException {
+		posNames = tagNames(posTagSet);
+		posFeats = new String[posNames.length];
+		for (int i = 0; i < posNames.length; i++) {
+			String name = posNames[i];
+			int split = name.indexOf('|');
+			if(split >= 0) {
+				posNames[i] = name.substring(0, split).intern();
+				posFeats[i] = name.substring(split+1).intern();
+			}
+		}
+
+		neNames = tagNames(neTagSet);
+		neTypeNames = tagNames(neTagTypeSet);
+	}
+
+	/**
+	 * @return the name of a tag id, ids outside the table are looked up in the tag set
+	 */
+	private static String tagName(String[] names, TagSet tagSet, int id) throws TagNameException {
+		return id >= 0 && id < names.length ? names[id] : tagSet.getTagName(id);
+	}
+
 	private se.su.ling.stagger.Tokenizer getTokenizer(Reader reader) {
 		if(lang.equals("sv"))
 			return new SwedishTokenizer(reader);
@@ -88,78 +155,204 @@ public class Stagger {
 			return new LatinTokenizer(reader);
 	}
 
-	private TaggedToken[] createTaggedToken(final List<se.lth.cs.docforia.graph.text.Token> sentenceList) {
+	/** Result of running the tokenizer over a document text */
+	static final class Segmentation {
+		private final String text;
+		private final List<ArrayList<Token>> sentences;
+		/** All tokens ordered by offset */
+		private final Token[] tokens;
+
+		Segmentation(String text, List<ArrayList<Token>> sentences) {
+			this.text = text;
+			this.sentences = sentences;
+
+			int count = 0;
+			for (ArrayList<Token> sentence : sentences) {
+				count += sentence.size();
+			}
+
+			this.tokens = new Token[count];
+			int k = 0;
+			for (ArrayList<Token> sentence : sentences) {
+				for (Token token : sentence) {
+					tokens[k++] = token;
+				}
+			}
+		}
+
+		/**
+		 * @return the token covering exactly text[start, end), or null
+		 */
+		Token token(int start, int end) {
+			int lo = 0, hi = tokens.length;
+			while(lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if(tokens[mid].offset < start)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+
+			if(lo < tokens.length && tokens[lo].offset == start && start + tokens[lo].value.length() == end)
+				return tokens[lo];
+			else
+				return null;
+		}
+	}
+
+	/**
+	 * Tokenize the document once, the result is shared by the segmenting stages and by the tagger, which
+	 * reuses the tokens, and dropped when the pipeline has finished the document.
+	 */
+	private List<ArrayList<Token>> segment(Document doc) {
+		//Stages writing tokens and sentences may run concurrently on the same document
+		synchronized (doc) {
+			String text = doc.text();
+			Segmentation segmentation = DocumentScratch.get(doc, SEGMENTATION);
+			if(segmentation == null || !(segmentation.text == text || segmentation.text.equals(text))) {
+				segmentation = new Segmentation(text, tokenize(text));
+				DocumentScratch.put(doc, SEGMENTATION, segmentation);
+			}
+
+			return segmentation.sentences;
+		}
+	}
+
+	/**
+	 * @return the tokenizer output of the document if it is still kept, otherwise null
+	 */
+	private static Segmentation segmentation(Document doc) {
+		synchronized (doc) {
+			String text = doc.text();
+			Segmentation segmentation = DocumentScratch.get(doc, SEGMENTATION);
+			if(segmentation == null || !(segmentation.text == text || segmentation.text.equals(text)))
+				return null;
+
+			return segmentation;
+		}
+	}
+
+	private List<ArrayList<Token>> tokenize(String text) {
+		ArrayList<ArrayList<Token>> sentences = new ArrayList<>();
+		se.su.ling.stagger.Tokenizer tokenizer = getTokenizer(new StringReader(text));
+		try
+		{
+			ArrayList<Token> sentence;
+			while((sentence = tokenizer.readSentence()) != null)
+			{
+				sentences.add(sentence);
+			}
+		}
+		catch(IOException ex) {
+			throw new IOError(ex);
+		}
+		return sentences;
+	}
+
+	private static void addTokens(Document doc, ArrayList<Token> sentence) {
+		int tokcounter = 1;
+		for(Token tok : sentence) {
+			se.lth.cs.docforia.graph.text.Token token = new se.lth.cs.docforia.graph.text.Token(doc).setRange(tok.offset, tok.offset+tok.value.length());
+			token.putProperty(ID, String.valueOf(tokcounter));
+			tokcounter++;
+		}
+	}
+
+	private static void addSentence(Document doc, ArrayList<Token> sentence) {
+		Token lastToken = sentence.get(sentence.size()-1);
+		new Sentence(doc).setRange(sentence.get(0).offset, lastToken.offset + lastToken.value.length());
+	}
+
+	/**
+	 * @param segmentation tokenizer output of the document, its tokens are reused when the range matches so
+	 *                     the tagger sees their token types, may be null
+	 */
+	static TaggedToken[] createTaggedToken(Segmentation segmentation, final List<se.lth.cs.docforia.graph.text.Token> sentenceList) {
 		TaggedToken[] sentence = new TaggedToken[sentenceList.size()];
 		int j = 0;
 		for(se.lth.cs.docforia.graph.text.Token tok : sentenceList) {
-			Token token = new Token(Token.TOK_LATIN, tok.text(), tok.getStart());
+			Token token = segmentation != null ? segmentation.token(tok.getStart(), tok.getEnd()) : null;
+			if(token == null)
+				token = new Token(Token.TOK_LATIN, tok.text(), tok.getStart());
 			sentence[j++] = new TaggedToken(token, String.valueOf(j));
 		}
 
 		return sentence;
 	}
 
-	private void fillTaggedTokens(final Sentence sentence, final List<se.lth.cs.docforia.graph.text.Token> sentenceList) {
-		if(!sentence.hasTag("stagger.isTagged"))
-			tag(sentence, sentenceList);
+	/**
+	 * Tag a sentence unless an earlier stage already did, safe to call concurrently for different sentences.
+	 * @return the tagged tokens to {@link #commit(Document, Sentence, List, TaggedToken[])}, null if already tagged
+	 */
+	private TaggedToken[] process(Document doc, final Sentence sentence, final List<se.lth.cs.docforia.graph.text.Token> sentenceList) {
+		if(sentenceList.isEmpty())
+			return null;
+
+		TokenScratch<TaggedToken> scratch = TokenScratch.of(doc, SCRATCH);
+		if(scratch.get(scratch.offset(sentence)) != null)
+			return null;
+
+		return pool.tagSentence(createTaggedToken(segmentation(doc), sentenceList), true, false);
 	}
 
-	private void tag(final Sentence sentence, final List<se.lth.cs.docforia.graph.text.Token> sentenceList) {
-		TaggedToken[] tokens = createTaggedToken(sentenceList);
-		tokens = tagger.tagSentence(tokens, true, false);
+	/**
+	 * Store the tagged tokens of a sentence and write the part of speech tags
+	 * @return offset of the sentence in the scratch area
+	 */
+	private int commit(Document doc, final Sentence sentence, final List<se.lth.cs.docforia.graph.text.Token> sentenceList, TaggedToken[] tokens) {
+		TokenScratch<TaggedToken> scratch = TokenScratch.of(doc, SCRATCH);
+		int offset = scratch.offset(sentence);
+		if(tokens == null)
+			return offset;
 
 		for(int i = 0; i < tokens.length; i++) {
 			TaggedToken token = tokens[i];
 			se.lth.cs.docforia.graph.text.Token tok = sentenceList.get(i);
-			tok.putTag("stagger.tagged-token", tokens[i]);
+			scratch.set(offset + i, token);
 
-			String[] pos = null;
 			if(token.posTag >= 0) {
-				try {
-					pos = posTagSet.getTagName(token.posTag).split("\\|",2);
-				} catch (TagNameException e) {
-					logger.info("Failed to get tag name: {}", token.posTag);
-				}
-			}
-
-			if(pos != null)
-			{
-				tok.putProperty(POS, pos[0]);
-				if(pos.length > 1) {
-					tok.putProperty(FEATS, pos[1]);
+				if(token.posTag < posNames.length) {
+					tok.putProperty(POS, posNames[token.posTag]);
+					if(posFeats[token.posTag] != null) {
+						tok.putProperty(FEATS, posFeats[token.posTag]);
+					}
 				}
+				else
+					logger.info("Failed to get tag name: {}", token.posTag);
 			}
 		}
 
-		sentence.putTag("stagger.isTagged", Boolean.TRUE);
+		return offset;
 	}
 
-	private void lemma(final List<se.lth.cs.docforia.graph.text.Token> sentence) {
+	private void lemma(Document doc, int offset, final List<se.lth.cs.docforia.graph.text.Token> sentence) {
+		TokenScratch<TaggedToken> scratch = TokenScratch.of(doc, SCRATCH);
 		for(int i = 0; i < sentence.size(); i++) {
-			TaggedToken token = sentence.get(i).getTag("stagger.tagged-token");
+			TaggedToken token = scratch.get(offset + i);
 			se.lth.cs.docforia.graph.text.Token tok = sentence.get(i);
 
 			tok.putProperty(LEMMA, token.lf);
 		}
 	}
 
-	private void ner(Document doc, final List<se.lth.cs.docforia.graph.text.Token> sentence) throws TagNameException {
+	private void ner(Document doc, int offset, final List<se.lth.cs.docforia.graph.text.Token> sentence) throws TagNameException {
+		TokenScratch<TaggedToken> scratch = TokenScratch.of(doc, SCRATCH);
 		for (int i = 0; i < sentence.size(); i++) {
-			TaggedToken token = sentence.get(i).getTag("stagger.tagged-token");
+			TaggedToken token = scratch.get(offset + i);
 			se.lth.cs.docforia.graph.text.Token startTok = sentence.get(i);
 
 			String ne = "O";
 			if(token.neTag >= 0)
-				ne = neTagSet.getTagName(token.neTag);
+				ne = tagName(neNames, neTagSet, token.neTag);
 
 			String neType = "";
 			if(token.neTypeTag >= 0)
-				neType = neTagTypeSet.getTagName(token.neTypeTag);
+				neType = tagName(neTypeNames, neTagTypeSet, token.neTypeTag);
 
 			if(ne.equals("B"))
 			{
 				i++;
-				while(i < sentence.size() && neTagSet.getTagName(sentence.get(i).<TaggedToken>getTag("stagger.tagged-token").neTag).equals("I")) {
+				while(i < sentence.size() && tagName(neNames, neTagSet, scratch.get(offset + i).neTag).equals("I")) {
 					i++;
 				}
 				i--;
@@ -170,6 +363,7 @@ public class Stagger {
 		}
 	}
 
+	@Layers(writes = se.lth.cs.docforia.graph.text.Token.class)
 	public static class Tokenizer implements se.lth.cs.nlp.langforia.kernel.structure.Tokenizer {
 		private final Stagger stagger;
 
@@ -180,26 +374,13 @@ public class Stagger {
 
 		@Override
 		public void apply(Document doc) {
-			se.su.ling.stagger.Tokenizer tokenizer = stagger.getTokenizer(new StringReader(doc.text()));
-			try
-			{
-				ArrayList<Token> sentence;
-				while((sentence = tokenizer.readSentence()) != null)
-				{
-					int tokcounter = 1;
-					for(Token tok : sentence) {
-						se.lth.cs.docforia.graph.text.Token token = new se.lth.cs.docforia.graph.text.Token(doc).setRange(tok.offset, tok.offset+tok.value.length());
-						token.putProperty(ID, String.valueOf(tokcounter));
-						tokcounter++;
-					}
-				}
-			}
-			catch(IOException ex) {
-				throw new IOError(ex);
+			for (ArrayList<Token> sentence : stagger.segment(doc)) {
+				addTokens(doc, sentence);
 			}
 		}
 	}
 
+	@Layers(writes = {se.lth.cs.docforia.graph.text.Token.class, Sentence.class})
 	public static class Segmenter implements se.lth.cs.nlp.langforia.kernel.structure.TextSegmenter {
 		private final Stagger stagger;
 
@@ -210,29 +391,14 @@ public class Stagger {
 
 		@Override
 		public void apply(Document doc) {
-			se.su.ling.stagger.Tokenizer tokenizer = stagger.getTokenizer(new StringReader(doc.text()));
-			try
-			{
-				ArrayList<Token> sentence;
-				while((sentence = tokenizer.readSentence()) != null)
-				{
-					int tokcounter = 1;
-					for(Token tok : sentence) {
-						se.lth.cs.docforia.graph.text.Token token = new se.lth.cs.docforia.graph.text.Token(doc).setRange(tok.offset, tok.offset+tok.value.length());
-						token.putProperty(ID, String.valueOf(tokcounter));
-						tokcounter++;
-					}
-					Token lastToken = sentence.get(sentence.size()-1);
-
-					new Sentence(doc).setRange(sentence.get(0).offset, lastToken.offset + lastToken.value.length());
-				}
-			}
-			catch(IOException ex) {
-				throw new IOError(ex);
+			for (ArrayList<Token> sentence : stagger.segment(doc)) {
+				addTokens(doc, sentence);
+				addSentence(doc, sentence);
 			}
 		}
 	}
 
+	@Layers(writes = Sentence.class)
 	public static class SentenceSplitter implements se.lth.cs.nlp.langforia.kernel.structure.SentenceSplitter {
 		private final Stagger stagger;
 
@@ -243,24 +409,15 @@ public class Stagger {
 
 		@Override
 		public void apply(Document doc) {
-			se.su.ling.stagger.Tokenizer tokenizer = stagger.getTokenizer(new StringReader(doc.text()));
-			try
-			{
-				ArrayList<Token> sentence;
-				while((sentence = tokenizer.readSentence()) != null)
-				{
-					Token lastToken = sentence.get(sentence.size()-1);
-					new Sentence(doc).setRange(sentence.get(0).offset, lastToken.offset + lastToken.value.length());
-				}
-			}
-			catch(IOException ex) {
-				throw new IOError(ex);
+			for (ArrayList<Token> sentence : stagger.segment(doc)) {
+				addSentence(doc, sentence);
 			}
 		}
 
 	}
 
-	public static class PartOfSpeechTagger implements se.lth.cs.nlp.langforia.kernel.structure.PartOfSpeechTagger {
+	@Layers(reads = {se.lth.cs.docforia.graph.text.Token.class, Sentence.class}, writes = {se.lth.cs.docforia.graph.text.Token.class, Sentence.class})
+	public static class PartOfSpeechTagger implements se.lth.cs.nlp.langforia.kernel.structure.PartOfSpeechTagger, SentenceLocalTool<TaggedToken[]> {
 		private final Stagger stagger;
 
 		@Inject
@@ -269,27 +426,18 @@ public class Stagger {
 		}
 
 		@Override
-		public void apply(Document doc) {
-			NodeTVar<se.lth.cs.docforia.graph.text.Token> T = se.lth.cs.docforia.graph.text.Token.var();
-			NodeTVar<Sentence> S = Sentence.var();
-
-			List<PropositionGroup> sentences =
-					doc.select(S, T)
-					   .where(T).coveredBy(S)
-					   .stream()
-					   .collect(QueryCollectors.groupBy(doc, S).orderByValue(T).collector());
-
-
-			for (PropositionGroup sentence : sentences)
-			{
+		public TaggedToken[] process(Document doc, Sentence sentence, List<se.lth.cs.docforia.graph.text.Token> tokens) {
+			return stagger.process(doc, sentence, tokens);
+		}
 
-				List<se.lth.cs.docforia.graph.text.Token> group = sentence.list(T);
-				stagger.fillTaggedTokens(sentence.key().get(S), group);
-			}
+		@Override
+		public void commit(Document doc, Sentence sentence, List<se.lth.cs.docforia.graph.text.Token> tokens, TaggedToken[] result) {
+			stagger.commit(doc, sentence, tokens, result);
 		}
 	}
 
-	public static class Lemmatizer implements se.lth.cs.nlp.langforia.kernel.structure.Lemmatizer {
+	@Layers(reads = {se.lth.cs.docforia.graph.text.Token.class, Sentence.class}, writes = {se.lth.cs.docforia.graph.text.Token.class, Sentence.class})
+	public static class Lemmatizer implements se.lth.cs.nlp.langforia.kernel.structure.Lemmatizer, SentenceLocalTool<TaggedToken[]> {
 		private final Stagger stagger;
 
 		@Inject
@@ -298,25 +446,19 @@ public class Stagger {
 		}
 
 		@Override
-		public void apply(Document doc) {
-			NodeTVar<se.lth.cs.docforia.graph.text.Token> T = se.lth.cs.docforia.graph.text.Token.var();
-			NodeTVar<Sentence> S = Sentence.var();
-
-			List<PropositionGroup> sentences = doc.select(S, T)
-												  .where(T).coveredBy(S)
-												  .stream()
-												  .collect(QueryCollectors.groupBy(doc, S).orderByValue(T).collector());
+		public TaggedToken[] process(Document doc, Sentence sentence, List<se.lth.cs.docforia.graph.text.Token> tokens) {
+			return stagger.process(doc, sentence, tokens);
+		}
 
-			for (PropositionGroup sentence : sentences)
-			{
-				List<se.lth.cs.docforia.graph.text.Token> group = sentence.list(T);
-				stagger.fillTaggedTokens(sentence.key().get(S), group);
-				stagger.lemma(group);
-			}
+		@Override
+		public void commit(Document doc, Sentence sentence, List<se.lth.cs.docforia.graph.text.Token> tokens, TaggedToken[] result) {
+			int offset = stagger.commit(doc, sentence, tokens, result);
+			stagger.lemma(doc, offset, tokens);
 		}
 	}
 
-	public static class NamedEntityRecognizer implements se.lth.cs.nlp.langforia.kernel.structure.NamedEntityRecognizer {
+	@Layers(reads = {se.lth.cs.docforia.graph.text.Token.class, Sentence.class}, writes = {se.lth.cs.docforia.graph.text.Token.class, Sentence.class, NamedEntity.class})
+	public static class NamedEntityRecognizer implements se.lth.cs.nlp.langforia.kernel.structure.NamedEntityRecognizer, SentenceLocalTool<TaggedToken[]> {
 		private final Stagger stagger;
 
 		@Inject
@@ -325,32 +467,28 @@ public class Stagger {
 		}
 
 		@Override
-		public void apply(Document doc) {
-			NodeTVar<se.lth.cs.docforia.graph.text.Token> T = se.lth.cs.docforia.graph.text.Token.var();
-			NodeTVar<Sentence> S = Sentence.var();
-
-			List<PropositionGroup> sentences = doc.select(S, T)
-												  .where(T).coveredBy(S)
-												  .stream()
-												  .collect(QueryCollectors.groupBy(doc, S).orderByValue(T).collector());
-
-			for (PropositionGroup sentence : sentences) {
-				try {
-					List<se.lth.cs.docforia.graph.text.Token> group = sentence.list(T);
-					stagger.fillTaggedTokens(sentence.key().get(S), group);
-					stagger.ner(doc, group);
-				} catch (TagNameException e) {
-					stagger.logger.error("Failed to NE tag",e);
-				}
+		public TaggedToken[] process(Document doc, Sentence sentence, List<se.lth.cs.docforia.graph.text.Token> tokens) {
+			return stagger.process(doc, sentence, tokens);
+		}
+
+		@Override
+		public void commit(Document doc, Sentence sentence, List<se.lth.cs.docforia.graph.text.Token> tokens, TaggedToken[] result) {
+			try {
+				int offset = stagger.commit(doc, sentence, tokens, result);
+				stagger.ner(doc, offset, tokens);
+			} catch (TagNameException e) {
+				stagger.logger.error("Failed to NE tag",e);
 			}
 		}
 
 	}
 
+	@Layers(reads = {se.lth.cs.docforia.graph.text.Token.class, Sentence.class}, writes = {se.lth.cs.docforia.graph.text.Token.class, Sentence.class, NamedEntity.class})
 	public static class Full implements
 			se.lth.cs.nlp.langforia.kernel.structure.Lemmatizer,
 			se.lth.cs.nlp.langforia.kernel.structure.NamedEntityRecognizer,
-			se.lth.cs.nlp.langforia.kernel.structure.PartOfSpeechTagger
+			se.lth.cs.nlp.langforia.kernel.structure.PartOfSpeechTagger,
+			SentenceLocalTool<TaggedToken[]>
 	{
 		private final Stagger stagger;
 
@@ -361,23 +499,24 @@ public class Stagger {
 
 		@Override
 		public void apply(Document doc) {
-			NodeTVar<se.lth.cs.docforia.graph.text.Token> T = se.lth.cs.docforia.graph.text.Token.var();
-			NodeTVar<Sentence> S = Sentence.var();
-
-			List<PropositionGroup> sentences = doc.select(S, T)
-												  .where(T).coveredBy(S)
-												  .stream()
-												  .collect(QueryCollectors.groupBy(doc, S).orderByValue(T).collector());
-
-			for (PropositionGroup sentence : sentences) {
-				try {
-					List<se.lth.cs.docforia.graph.text.Token> group = sentence.list(T);
-					stagger.fillTaggedTokens(sentence.key(S), group);
-					stagger.lemma(group);
-					stagger.ner(doc, group);
-				} catch (TagNameException e) {
-					stagger.logger.error("Failed to NE tag",e);
-				}
+			SentenceParallel.apply(doc, this);
+			//Nothing else reads the tagged tokens
+			TokenScratch.clear(doc, SCRATCH);
+		}
+
+		@Override
+		public TaggedToken[] process(Document doc, Sentence sentence, List<se.lth.cs.docforia.graph.text.Token> tokens) {
+			return stagger.process(doc, sentence, tokens);
+		}
+
+		@Override
+		public void commit(Document doc, Sentence sentence, List<se.lth.cs.docforia.graph.text.Token> tokens, TaggedToken[] result) {
+			try {
+				int offset = stagger.commit(doc, sentence, tokens, result);
+				stagger.lemma(doc, offset, tokens);
+				stagger.ner(doc, offset, tokens);
+			} catch (TagNameException e) {
+				stagger.logger.error("Failed to NE tag",e);
 			}
 		}
 	}
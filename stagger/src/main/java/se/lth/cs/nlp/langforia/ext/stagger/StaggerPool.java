@@ -0,0 +1,265 @@
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.lth.cs.nlp.langforia.ext.stagger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.lth.cs.nlp.langforia.kernel.exceptions.LangforiaRuntimeException;
+import se.su.ling.stagger.TaggedToken;
+import se.su.ling.stagger.Tagger;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Pool of Stagger {@link Tagger} replicas for tagging sentences concurrently.
+ *
+ * A tagger is not safe to use from several threads, every replica is therefore used by one thread at a time.
+ * Replicas are created on demand by deserializing a copy of the prototype in which large primitive arrays
+ * and all strings are shared with the prototype rather than copied. Strings are immutable. Sharing the
+ * arrays relies on the only large primitive arrays of a Stagger model being the perceptron weights and the
+ * lexicon tables, which tagging reads but never writes; scratch buffers of a tagger are allocated per
+ * sentence or are smaller than {@link #MIN_SHARED_LENGTH}. StaggerPoolTest checks this against a model by
+ * tagging with several replicas concurrently and comparing the shared arrays before and after. The
+ * remaining state of a replica is its own.
+ *
+ * The prototype is serialized once when the pool is created, before it is used for tagging, so replicas
+ * never copy state the prototype holds while a sentence is being tagged.
+ */
+public class StaggerPool {
+	/** System property overriding the maximum number of replicas */
+	public static final String REPLICAS_PROPERTY = "langforia.stagger.replicas";
+
+	private static final Logger logger = LoggerFactory.getLogger(StaggerPool.class);
+
+	/** Arrays shorter than this are copied */
+	static final int MIN_SHARED_LENGTH = 256;
+
+	private final Tagger prototype;
+	private final int capacity;
+	private final LinkedBlockingDeque<Tagger> idle = new LinkedBlockingDeque<>();
+	private int created;
+
+	private final byte[] image;
+	private final Object[] shared;
+
+	/**
+	 * @param prototype tagger to replicate, also the first member of the pool
+	 * @param capacity maximum number of taggers
+	 */
+	public StaggerPool(Tagger prototype, int capacity) {
+		if(capacity < 1)
+			throw new IllegalArgumentException("capacity must be at least 1");
+
+		this.prototype = prototype;
+		this.capacity = capacity;
+		this.created = 1;
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try(SharingOutputStream writer = new SharingOutputStream(output)) {
+			writer.writeObject(prototype);
+			this.shared = writer.shared.toArray();
+		} catch (IOException e) {
+			throw new LangforiaRuntimeException("Failed to serialize stagger tagger", e);
+		}
+		this.image = output.toByteArray();
+		this.idle.add(prototype);
+
+		logger.info("Stagger replicas share " + shared.length + " arrays and strings, approx. " + (image.length >> 10) + " KiB of state is copied per replica");
+	}
+
+	/**
+	 * @return default number of replicas, the number of processors unless overridden by {@link #REPLICAS_PROPERTY}
+	 */
+	public static int defaultCapacity() {
+		String replicas = System.getProperty(REPLICAS_PROPERTY);
+		if(replicas != null)
+			return Math.max(1, Integer.parseInt(replicas));
+		else
+			return Runtime.getRuntime().availableProcessors();
+	}
+
+	public Tagger prototype() {
+		return prototype;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the arrays and strings shared by all replicas
+	 */
+	Object[] shared() {
+		return shared.clone();
+	}
+
+	/**
+	 * @return number of taggers created so far, including the prototype
+	 */
+	public synchronized int size() {
+		return created;
+	}
+
+	/** Id of an object shared between replicas */
+	private static final class SharedRef implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final int index;
+
+		SharedRef(int index) {
+			this.index = index;
+		}
+	}
+
+	private static boolean isShared(Object obj) {
+		if(obj instanceof String)
+			return true;
+
+		Class<?> type = obj.getClass();
+		return type.isArray() && type.getComponentType().isPrimitive() && java.lang.reflect.Array.getLength(obj) >= MIN_SHARED_LENGTH;
+	}
+
+	private static class SharingOutputStream extends ObjectOutputStream {
+		private final IdentityHashMap<Object,SharedRef> refs = new IdentityHashMap<>();
+		private final ArrayList<Object> shared = new ArrayList<>();
+
+		SharingOutputStream(OutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if(!isShared(obj))
+				return obj;
+
+			SharedRef ref = refs.get(obj);
+			if(ref == null) {
+				ref = new SharedRef(shared.size());
+				shared.add(obj);
+				refs.put(obj, ref);
+			}
+			return ref;
+		}
+	}
+
+	private static class SharingInputStream extends ObjectInputStream {
+		private final Object[] shared;
+
+		SharingInputStream(InputStream in, Object[] shared) throws IOException {
+			super(in);
+			this.shared = shared;
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			return obj instanceof SharedRef ? shared[((SharedRef) obj).index] : obj;
+		}
+	}
+
+	/**
+	 * Create a new replica of the prototype
+	 */
+	public Tagger replicate() {
+		try(SharingInputStream reader = new SharingInputStream(new ByteArrayInputStream(image), shared)) {
+			return (Tagger)reader.readObject();
+		} catch (IOException | ClassNotFoundException e) {
+			throw new LangforiaRuntimeException("Failed to replicate stagger tagger", e);
+		}
+	}
+
+	/**
+	 * Take a tagger from the pool, creating a replica if none is idle and the pool is not full,
+	 * otherwise waits for one to be released.
+	 */
+	public Tagger acquire() {
+		Tagger tagger = idle.pollFirst();
+		if(tagger != null)
+			return tagger;
+
+		boolean create = false;
+		synchronized (this) {
+			if(created < capacity) {
+				created++;
+				create = true;
+			}
+		}
+
+		if(create) {
+			try {
+				return replicate();
+			} catch (RuntimeException e) {
+				synchronized (this) {
+					created--;
+				}
+				throw e;
+			}
+		}
+
+		//Sentences are tagged in the common ForkJoin pool, which may add a worker while this one waits
+		IdleBlocker blocker = new IdleBlocker();
+		try {
+			ForkJoinPool.managedBlock(blocker);
+			return blocker.tagger;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LangforiaRuntimeException("Interrupted while waiting for a stagger tagger", e);
+		}
+	}
+
+	/** Waits for a tagger to be released */
+	private final class IdleBlocker implements ForkJoinPool.ManagedBlocker {
+		private Tagger tagger;
+
+		@Override
+		public boolean block() throws InterruptedException {
+			if(tagger == null)
+				tagger = idle.takeFirst();
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return tagger != null || (tagger = idle.pollFirst()) != null;
+		}
+	}
+
+	/**
+	 * Return a tagger acquired from this pool
+	 */
+	public void release(Tagger tagger) {
+		//Most recently used first, keeps the working set of replicas small
+		idle.offerFirst(tagger);
+	}
+
+	/**
+	 * Tag a sentence using any idle tagger, see {@link Tagger#tagSentence(TaggedToken[], boolean, boolean)}
+	 */
+	public TaggedToken[] tagSentence(TaggedToken[] sentence, boolean average, boolean preserve) {
+		Tagger tagger = acquire();
+		try {
+			return tagger.tagSentence(sentence, average, preserve);
+		} finally {
+			release(tagger);
+		}
+	}
+}
@@ -0,0 +1,397 @@
+/**
+ *  This file is part of Langforia.
+ *
+ *  Langforia is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Langforia is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Langforia.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.lth.cs.nlp.langforia.ext.stagger;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import se.lth.cs.nlp.langforia.kernel.resources.FileResource;
+import se.lth.cs.nlp.langforia.kernel.resources.Resource;
+import se.su.ling.stagger.Tagger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Uncompressed snapshot of a Stagger {@link Tagger}.
+ *
+ * The tagger is written with Java serialization, but every large primitive array, i.e. the weight
+ * vectors and lexicon tables, is replaced by a reference into a data section of raw little-endian
+ * primitives. Loading maps the file and copies the arrays to the heap in bulk, which is much faster than
+ * decompressing and deserializing the original bzip2 model. The arrays cannot stay in the mapping since
+ * the tagger uses plain Java arrays, so a loaded snapshot takes as much heap as the original model.
+ *
+ * Layout: magic, object section length, data section offset (little-endian longs),
+ * object section, data section with every array aligned to 8 bytes.
+ */
+public class StaggerSnapshot {
+	private static final byte[] MAGIC = "LFSTAGR1".getBytes(StandardCharsets.US_ASCII);
+	private static final int HEADER = 24;
+
+	/** Arrays shorter than this stay in the object section */
+	private static final int MIN_LENGTH = 256;
+
+	/** Elements converted per bulk read */
+	private static final int CHUNK = 1 << 20;
+
+	/**
+	 * @return snapshot file name for a model, e.g. swedish.bin.snapshot for swedish.bin.bz2
+	 */
+	public static String snapshotName(String modelName) {
+		String base = modelName.endsWith(".bz2") ? modelName.substring(0, modelName.length()-4) : modelName;
+		return base + ".snapshot";
+	}
+
+	static final class ArrayRef implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final char type;
+		private final long offset;
+		private final int length;
+
+		ArrayRef(char type, long offset, int length) {
+			this.type = type;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private static int width(char type) {
+		switch (type) {
+			case 'D': case 'J': return 8;
+			case 'F': case 'I': return 4;
+			case 'S': case 'C': return 2;
+			default: return 1;
+		}
+	}
+
+	private static char type(Object array) {
+		if(array instanceof double[]) return 'D';
+		if(array instanceof float[]) return 'F';
+		if(array instanceof long[]) return 'J';
+		if(array instanceof int[]) return 'I';
+		if(array instanceof short[]) return 'S';
+		if(array instanceof char[]) return 'C';
+		if(array instanceof byte[]) return 'B';
+		return 0;
+	}
+
+	private static class SnapshotOutputStream extends ObjectOutputStream {
+		private final FileChannel data;
+		private final IdentityHashMap<Object,ArrayRef> written = new IdentityHashMap<>();
+		private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK * 8).order(ByteOrder.LITTLE_ENDIAN);
+
+		SnapshotOutputStream(OutputStream out, FileChannel data) throws IOException {
+			super(out);
+			this.data = data;
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			char type = type(obj);
+			if(type == 0 || java.lang.reflect.Array.getLength(obj) < MIN_LENGTH)
+				return obj;
+
+			ArrayRef ref = written.get(obj);
+			if(ref == null) {
+				ref = new ArrayRef(type, data.position(), java.lang.reflect.Array.getLength(obj));
+				write(obj, type, ref.length);
+				written.put(obj, ref);
+			}
+			return ref;
+		}
+
+		private void write(Object array, char type, int length) throws IOException {
+			for (int start = 0; start < length; start += CHUNK) {
+				int n = Math.min(CHUNK, length - start);
+				buffer.clear();
+				switch (type) {
+					case 'D': buffer.asDoubleBuffer().put((double[])array, start, n); break;
+					case 'F': buffer.asFloatBuffer().put((float[])array, start, n); break;
+					case 'J': buffer.asLongBuffer().put((long[])array, start, n); break;
+					case 'I': buffer.asIntBuffer().put((int[])array, start, n); break;
+					case 'S': buffer.asShortBuffer().put((short[])array, start, n); break;
+					case 'C': buffer.asCharBuffer().put((char[])array, start, n); break;
+					default:  buffer.put((byte[])array, start, n); break;
+				}
+				buffer.position(0).limit(n * width(type));
+				while(buffer.hasRemaining()) {
+					data.write(buffer);
+				}
+			}
+
+			//Keep arrays aligned
+			long padding = (8 - data.position() % 8) % 8;
+			if(padding > 0)
+				data.write(ByteBuffer.allocate((int)padding));
+		}
+	}
+
+	/** Random access to a resource mapped in segments */
+	private static class Segments {
+		private final List<ByteBuffer> segments;
+
+		Segments(List<ByteBuffer> segments) {
+			this.segments = segments;
+		}
+
+		/**
+		 * @return little-endian buffer of the given range, a view when it is within one segment
+		 */
+		ByteBuffer slice(long position, int length) {
+			int index = (int)(position / Resource.SEGMENT_SIZE);
+			int offset = (int)(position % Resource.SEGMENT_SIZE);
+			ByteBuffer segment = segments.get(index);
+
+			if((long)offset + length <= segment.capacity()) {
+				ByteBuffer view = segment.duplicate();
+				view.limit(offset + length).position(offset);
+				return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+			}
+
+			ByteBuffer copy = ByteBuffer.allocate(length);
+			while(copy.hasRemaining()) {
+				ByteBuffer view = segments.get(index++).duplicate();
+				view.position(offset);
+				view.limit(Math.min(view.capacity(), offset + copy.remaining()));
+				copy.put(view);
+				offset = 0;
+			}
+			copy.flip();
+			return copy.order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+
+	private static class SegmentInputStream extends InputStream {
+		private final Segments segments;
+		private long position;
+		private final long end;
+
+		SegmentInputStream(Segments segments, long position, long length) {
+			this.segments = segments;
+			this.position = position;
+			this.end = position + length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if(position >= end)
+				return -1;
+			return segments.slice(position++, 1).get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(position >= end)
+				return -1;
+
+			int n = (int)Math.min(len, end - position);
+			segments.slice(position, n).get(b, off, n);
+			position += n;
+			return n;
+		}
+	}
+
+	private static class SnapshotInputStream extends ObjectInputStream {
+		private final Segments segments;
+		private final long dataOffset;
+		private final HashMap<Long,Object> arrays = new HashMap<>();
+
+		SnapshotInputStream(InputStream in, Segments segments, long dataOffset) throws IOException {
+			super(in);
+			this.segments = segments;
+			this.dataOffset = dataOffset;
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			if(!(obj instanceof ArrayRef))
+				return obj;
+
+			ArrayRef ref = (ArrayRef)obj;
+			Object array = arrays.get(ref.offset);
+			if(array == null) {
+				array = read(ref);
+				arrays.put(ref.offset, array);
+			}
+			return array;
+		}
+
+		private Object read(ArrayRef ref) {
+			int width = width(ref.type);
+			Object array;
+			switch (ref.type) {
+				case 'D': array = new double[ref.length]; break;
+				case 'F': array = new float[ref.length]; break;
+				case 'J': array = new long[ref.length]; break;
+				case 'I': array = new int[ref.length]; break;
+				case 'S': array = new short[ref.length]; break;
+				case 'C': array = new char[ref.length]; break;
+				default:  array = new byte[ref.length]; break;
+			}
+
+			for (int start = 0; start < ref.length; start += CHUNK) {
+				int n = Math.min(CHUNK, ref.length - start);
+				ByteBuffer buffer = segments.slice(dataOffset + ref.offset + (long)start * width, n * width);
+				switch (ref.type) {
+					case 'D': buffer.asDoubleBuffer().get((double[])array, start, n); break;
+					case 'F': buffer.asFloatBuffer().get((float[])array, start, n); break;
+					case 'J': buffer.asLongBuffer().get((long[])array, start, n); break;
+					case 'I': buffer.asIntBuffer().get((int[])array, start, n); break;
+					case 'S': buffer.asShortBuffer().get((short[])array, start, n); break;
+					case 'C': buffer.asCharBuffer().get((char[])array, start, n); break;
+					default:  buffer.get((byte[])array, start, n); break;
+				}
+			}
+			return array;
+		}
+	}
+
+	/**
+	 * Write a snapshot of a tagger, the file is replaced atomically.
+	 */
+	public static void write(Tagger tagger, File output) throws IOException {
+		writeObject(tagger, output);
+	}
+
+	static void writeObject(Object root, File output) throws IOException {
+		Path directory = output.getAbsoluteFile().getParentFile().toPath();
+		Path dataFile = Files.createTempFile(directory, output.getName(), ".data");
+		Path snapshot = Files.createTempFile(directory, output.getName(), ".tmp");
+
+		try {
+			ByteArrayOutputStream objects = new ByteArrayOutputStream();
+			try(FileChannel data = FileChannel.open(dataFile, StandardOpenOption.WRITE, StandardOpenOption.READ);
+				SnapshotOutputStream writer = new SnapshotOutputStream(objects, data)) {
+				writer.writeObject(root);
+			}
+
+			long objectLength = objects.size();
+			long dataOffset = (HEADER + objectLength + 7) / 8 * 8;
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			header.put(MAGIC).putLong(objectLength).putLong(dataOffset).flip();
+
+			try(FileChannel out = FileChannel.open(snapshot, StandardOpenOption.WRITE);
+				FileChannel data = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+				out.write(header);
+				out.write(ByteBuffer.wrap(objects.toByteArray()));
+				out.write(ByteBuffer.allocate((int)(dataOffset - HEADER - objectLength)));
+
+				long position = 0;
+				long size = data.size();
+				while(position < size) {
+					position += data.transferTo(position, size - position, out);
+				}
+			}
+
+			Files.move(snapshot, output.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(dataFile);
+			Files.deleteIfExists(snapshot);
+		}
+	}
+
+	/**
+	 * @return true if the resource starts with the snapshot magic
+	 */
+	public static boolean isSnapshot(Resource resource) {
+		try(InputStream input = resource.binaryRead()) {
+			byte[] magic = new byte[MAGIC.length];
+			int read = 0;
+			while(read < magic.length) {
+				int n = input.read(magic, read, magic.length - read);
+				if(n == -1)
+					return false;
+				read += n;
+			}
+			return java.util.Arrays.equals(magic, MAGIC);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Load a tagger from a snapshot
+	 */
+	public static Tagger read(Resource resource) throws IOException, ClassNotFoundException {
+		return (Tagger)readObject(resource);
+	}
+
+	static Object readObject(Resource resource) throws IOException, ClassNotFoundException {
+		Segments segments = new Segments(resource.mappedSegments());
+		ByteBuffer header = segments.slice(0, HEADER);
+
+		byte[] magic = new byte[MAGIC.length];
+		header.get(magic);
+		if(!java.util.Arrays.equals(magic, MAGIC))
+			throw new IOException("Not a stagger snapshot: " + resource.name());
+
+		long objectLength = header.getLong();
+		long dataOffset = header.getLong();
+
+		try(ObjectInputStream reader = new SnapshotInputStream(new BufferedInputStream(new SegmentInputStream(segments, HEADER, objectLength), 1024*1024), segments, dataOffset)) {
+			return reader.readObject();
+		}
+	}
+
+	/**
+	 * Load a tagger from the original model format, bzip2 compressed or not.
+	 */
+	public static Tagger readModel(Resource resource) throws IOException, ClassNotFoundException {
+		InputStream input = resource.binaryRead();
+		if(resource.name().endsWith(".bz2"))
+			input = new BZip2CompressorInputStream(input);
+
+		try(ObjectInputStream modelReader = new ObjectInputStream(new BufferedInputStream(input, 1024*1024))) {
+			return (Tagger)modelReader.readObject();
+		}
+	}
+
+	/**
+	 * Convert a model: StaggerSnapshot model.bin.bz2 [model.bin.snapshot]
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length < 1) {
+			System.err.println("Usage: StaggerSnapshot <model.bin.bz2> [<output>]");
+			System.exit(1);
+		}
+
+		File input = new File(args[0]);
+		File output = args.length > 1 ? new File(args[1]) : new File(input.getAbsoluteFile().getParentFile(), snapshotName(input.getName()));
+
+		long start = System.currentTimeMillis();
+		Tagger tagger = readModel(new FileResource(input));
+		System.out.println("Read " + input + " in " + (System.currentTimeMillis() - start) + " ms");
+
+		write(tagger, output);
+
+		start = System.currentTimeMillis();
+		read(new FileResource(output));
+		System.out.println("Wrote " + output + ", loads in " + (System.currentTimeMillis() - start) + " ms");
+	}
+}
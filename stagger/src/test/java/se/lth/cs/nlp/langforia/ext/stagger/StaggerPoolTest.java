@@ -0,0 +1,178 @@
+package se.lth.cs.nlp.langforia.ext.stagger;
+
+import org.junit.Test;
+import se.lth.cs.nlp.langforia.kernel.metrics.HeapUsage;
+import se.lth.cs.nlp.langforia.kernel.resources.FileResource;
+import se.su.ling.stagger.Tagger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StaggerPoolTest {
+
+    private static final int REPLICAS = 4;
+
+    @Test
+    public void testReplicas() throws IOException, ClassNotFoundException {
+        String model = System.getProperty(StaggerSnapshotTest.MODEL_PROPERTY);
+        if(model == null)
+            return;
+
+        long before = HeapUsage.retained();
+        Tagger prototype = StaggerSnapshot.readModel(new FileResource(new File(model)));
+        StaggerPool pool = new StaggerPool(prototype, REPLICAS + 1);
+        long loaded = HeapUsage.retained();
+
+        String[] expected = StaggerSnapshotTest.tag(prototype);
+
+        List<Tagger> replicas = new ArrayList<>();
+        for (int i = 0; i < REPLICAS; i++) {
+            replicas.add(pool.replicate());
+        }
+        long replicated = HeapUsage.retained();
+
+        for (Tagger replica : replicas) {
+            assertNotSame(prototype, replica);
+            assertArrayEquals(expected, StaggerSnapshotTest.tag(replica));
+        }
+
+        //The weights and lexicon are shared, a replica must cost a small fraction of the model
+        long modelBytes = loaded - before;
+        long replicaBytes = (replicated - loaded) / REPLICAS;
+        assertTrue("replica " + (replicaBytes >> 10) + " KiB of model " + (modelBytes >> 10) + " KiB", replicaBytes < modelBytes / 4);
+    }
+
+    @Test
+    public void testAcquire() throws IOException, ClassNotFoundException {
+        String model = System.getProperty(StaggerSnapshotTest.MODEL_PROPERTY);
+        if(model == null)
+            return;
+
+        Tagger prototype = StaggerSnapshot.readModel(new FileResource(new File(model)));
+        StaggerPool pool = new StaggerPool(prototype, 2);
+
+        Tagger first = pool.acquire();
+        Tagger second = pool.acquire();
+        assertNotSame(first, second);
+        assertEquals(2, pool.size());
+
+        pool.release(second);
+        assertSame(second, pool.acquire());
+        pool.release(first);
+        pool.release(second);
+    }
+
+    @Test
+    public void testAcquireInForkJoinPool() throws Exception {
+        StaggerPool pool = new StaggerPool(new Tagger(), 1);
+        Tagger tagger = pool.acquire();
+
+        //More waiting tasks than workers, the pool compensates for the blocked workers
+        ForkJoinPool forkJoin = new ForkJoinPool(2);
+        try {
+            List<ForkJoinTask<Tagger>> tasks = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                tasks.add(forkJoin.submit(() -> {
+                    Tagger acquired = pool.acquire();
+                    pool.release(acquired);
+                    return acquired;
+                }));
+            }
+
+            Thread.sleep(100);
+            pool.release(tagger);
+            for (ForkJoinTask<Tagger> task : tasks) {
+                assertSame(tagger, task.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            forkJoin.shutdownNow();
+        }
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void testSharedArrays() {
+        Tagger prototype = new Tagger();
+        StaggerPool pool = new StaggerPool(prototype, 2);
+        List<Object> shared = Arrays.asList(pool.shared());
+        assertTrue(shared.stream().anyMatch(obj -> obj == prototype.w));
+        assertTrue(shared.stream().anyMatch(obj -> obj == prototype.ids));
+        assertFalse(shared.stream().anyMatch(obj -> obj == prototype.small));
+
+        Tagger replica = pool.replicate();
+        assertSame(prototype.w, replica.w);
+        assertSame(prototype.ids, replica.ids);
+        assertNotSame(prototype.small, replica.small);
+        assertNotSame(prototype.map, replica.map);
+    }
+
+    private static int checksum(Object obj) {
+        if(obj instanceof double[]) return Arrays.hashCode((double[]) obj);
+        if(obj instanceof float[]) return Arrays.hashCode((float[]) obj);
+        if(obj instanceof long[]) return Arrays.hashCode((long[]) obj);
+        if(obj instanceof int[]) return Arrays.hashCode((int[]) obj);
+        if(obj instanceof short[]) return Arrays.hashCode((short[]) obj);
+        if(obj instanceof char[]) return Arrays.hashCode((char[]) obj);
+        if(obj instanceof byte[]) return Arrays.hashCode((byte[]) obj);
+        if(obj instanceof boolean[]) return Arrays.hashCode((boolean[]) obj);
+        return obj.hashCode();
+    }
+
+    @Test
+    public void testSharedArraysReadOnly() throws Exception {
+        String model = System.getProperty(StaggerSnapshotTest.MODEL_PROPERTY);
+        if(model == null)
+            return;
+
+        Tagger prototype = StaggerSnapshot.readModel(new FileResource(new File(model)));
+        StaggerPool pool = new StaggerPool(prototype, REPLICAS);
+        String[] expected = StaggerSnapshotTest.tag(prototype);
+
+        Object[] shared = pool.shared();
+        int[] before = new int[shared.length];
+        for (int i = 0; i < shared.length; i++) {
+            before[i] = checksum(shared[i]);
+        }
+
+        //Replicas tagging concurrently must agree with the prototype and leave the shared arrays as they were
+        ExecutorService executor = Executors.newFixedThreadPool(REPLICAS);
+        try {
+            List<Future<String[]>> results = new ArrayList<>();
+            for (int i = 0; i < REPLICAS * 8; i++) {
+                results.add(executor.submit(() -> {
+                    Tagger tagger = pool.acquire();
+                    try {
+                        return StaggerSnapshotTest.tag(tagger);
+                    } finally {
+                        pool.release(tagger);
+                    }
+                }));
+            }
+            for (Future<String[]> result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < shared.length; i++) {
+            assertEquals("shared " + shared[i].getClass().getSimpleName(), before[i], checksum(shared[i]));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package se.lth.cs.nlp.langforia.ext.stagger;
+
+import org.junit.Test;
+import se.lth.cs.nlp.langforia.kernel.resources.FileResource;
+import se.su.ling.stagger.SwedishTokenizer;
+import se.su.ling.stagger.TaggedToken;
+import se.su.ling.stagger.Tagger;
+import se.su.ling.stagger.Token;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StaggerSnapshotTest {
+
+    /** Original Stagger model to compare with its snapshot, e.g. swedish.bin.bz2. The test is skipped without it. */
+    public static final String MODEL_PROPERTY = "langforia.stagger.model";
+
+    private static final String TEXT = "Stagger taggar svensk text med hög träffsäkerhet. Kungen bor på Stockholms slott sedan 1981.";
+
+    static class Arrays implements Serializable {
+        double[] doubles;
+        float[] floats;
+        long[] longs;
+        int[] ints;
+        int[] sameInts;
+        short[] shorts;
+        char[] chars;
+        byte[] bytes;
+        int[] small;
+        String name;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException, ClassNotFoundException {
+        Random random = new Random(7);
+        Arrays arrays = new Arrays();
+        arrays.doubles = random.doubles(3000).toArray();
+        arrays.floats = new float[1000];
+        arrays.longs = random.longs(700).toArray();
+        arrays.ints = random.ints(5000).toArray();
+        arrays.sameInts = arrays.ints;
+        arrays.shorts = new short[999];
+        arrays.chars = new char[257];
+        arrays.bytes = new byte[4099];
+        arrays.small = new int[] {1, 2, 3};
+        arrays.name = "arrays";
+        for (int i = 0; i < arrays.floats.length; i++) {
+            arrays.floats[i] = random.nextFloat();
+        }
+        for (int i = 0; i < arrays.shorts.length; i++) {
+            arrays.shorts[i] = (short)random.nextInt();
+        }
+        for (int i = 0; i < arrays.chars.length; i++) {
+            arrays.chars[i] = (char)random.nextInt();
+        }
+        random.nextBytes(arrays.bytes);
+
+        File file = File.createTempFile("langforia-snapshot", ".snapshot");
+        try {
+            StaggerSnapshot.writeObject(arrays, file);
+            assertTrue(StaggerSnapshot.isSnapshot(new FileResource(file)));
+
+            Arrays loaded = (Arrays)StaggerSnapshot.readObject(new FileResource(file));
+            assertArrayEquals(arrays.doubles, loaded.doubles, 0.0);
+            assertArrayEquals(arrays.floats, loaded.floats, 0.0f);
+            assertArrayEquals(arrays.longs, loaded.longs);
+            assertArrayEquals(arrays.ints, loaded.ints);
+            assertSame(loaded.ints, loaded.sameInts);
+            assertArrayEquals(arrays.shorts, loaded.shorts);
+            assertArrayEquals(arrays.chars, loaded.chars);
+            assertArrayEquals(arrays.bytes, loaded.bytes);
+            assertArrayEquals(arrays.small, loaded.small);
+            assertEquals("arrays", loaded.name);
+        } finally {
+            file.delete();
+        }
+    }
+
+    static String[] tag(Tagger tagger) throws IOException {
+        ArrayList<String> tags = new ArrayList<>();
+        SwedishTokenizer tokenizer = new SwedishTokenizer(new StringReader(TEXT));
+        ArrayList<Token> sentence;
+        while((sentence = tokenizer.readSentence()) != null) {
+            TaggedToken[] tokens = new TaggedToken[sentence.size()];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = new TaggedToken(sentence.get(i), String.valueOf(i + 1));
+            }
+
+            for (TaggedToken token : tagger.tagSentence(tokens, true, false)) {
+                tags.add(token.token.value + "/" + token.posTag + "/" + token.neTag + "/" + token.neTypeTag + "/" + token.lf);
+            }
+        }
+        return tags.toArray(new String[tags.size()]);
+    }
+
+    @Test
+    public void testTaggerRoundTrip() throws IOException, ClassNotFoundException {
+        String model = System.getProperty(MODEL_PROPERTY);
+        if(model == null)
+            return;
+
+        Tagger original = StaggerSnapshot.readModel(new FileResource(new File(model)));
+        File file = File.createTempFile("langforia-stagger", ".snapshot");
+        try {
+            StaggerSnapshot.write(original, file);
+            Tagger snapshot = StaggerSnapshot.read(new FileResource(file));
+            assertArrayEquals(tag(original), tag(snapshot));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package se.lth.cs.nlp.langforia.ext.stagger;
+
+import org.junit.Test;
+import se.lth.cs.docforia.Document;
+import se.lth.cs.docforia.memstore.MemoryDocument;
+import se.su.ling.stagger.TaggedToken;
+import se.su.ling.stagger.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class StaggerTest {
+
+    /** Any token type other than the fallback */
+    private static final int TYPE = Token.TOK_LATIN + 1;
+
+    @Test
+    public void testReuseTokens() {
+        String text = "Hej, 3.5 kr. Nu";
+        Token hej = new Token(TYPE, "Hej", 0);
+        Token comma = new Token(TYPE, ",", 3);
+        Token number = new Token(TYPE, "3.5", 5);
+        Token kr = new Token(TYPE, "kr", 9);
+        Token dot = new Token(TYPE, ".", 11);
+        Token nu = new Token(TYPE, "Nu", 13);
+        List<ArrayList<Token>> sentences = Arrays.asList(new ArrayList<>(Arrays.asList(hej, comma, number, kr, dot)),
+                                                         new ArrayList<>(Collections.singletonList(nu)));
+        Stagger.Segmentation segmentation = new Stagger.Segmentation(text, sentences);
+
+        assertSame(number, segmentation.token(5, 8));
+        assertSame(nu, segmentation.token(13, 15));
+        assertNull(segmentation.token(5, 7));
+        assertNull(segmentation.token(6, 8));
+        assertNull(segmentation.token(15, 16));
+
+        //The document tokens differ from the tokenizer output at "k"
+        Document doc = new MemoryDocument("doc", text);
+        List<se.lth.cs.docforia.graph.text.Token> tokens = new ArrayList<>();
+        int[][] ranges = {{0, 3}, {3, 4}, {5, 8}, {9, 10}, {11, 12}};
+        for (int[] range : ranges) {
+            tokens.add(new se.lth.cs.docforia.graph.text.Token(doc).setRange(range[0], range[1]));
+        }
+
+        TaggedToken[] tagged = Stagger.createTaggedToken(segmentation, tokens);
+        assertEquals(tokens.size(), tagged.length);
+        assertSame(hej, tagged[0].token);
+        assertSame(comma, tagged[1].token);
+        assertSame(number, tagged[2].token);
+        assertNotSame(kr, tagged[3].token);
+        assertEquals(Token.TOK_LATIN, tagged[3].token.type);
+        assertEquals("k", tagged[3].token.value);
+        assertEquals(9, tagged[3].token.offset);
+        assertSame(dot, tagged[4].token);
+        assertEquals("5", tagged[4].id);
+
+        //Without the tokenizer output every token is created
+        tagged = Stagger.createTaggedToken(null, tokens);
+        for (int i = 0; i < tagged.length; i++) {
+            assertEquals(Token.TOK_LATIN, tagged[i].token.type);
+            assertEquals(tokens.get(i).text(), tagged[i].token.value);
+        }
+    }
+}
@@ -34,7 +34,7 @@ import java.util.Properties;
 
 public class StanfordCoreNlpPipeline implements FullPipeline {
 
-    private static final ThreadLocal<StanfordCoreNLP> pool = new ThreadLocal<StanfordCoreNLP>() {
+    private final ThreadLocal<StanfordCoreNLP> pool = new ThreadLocal<StanfordCoreNLP>() {
         @Override
         protected StanfordCoreNLP initialValue() {
             // creates a StanfordCoreNLP object, with POS tagging, lemmatization, NER, parsing, and coreference resolution
@@ -25,15 +25,17 @@ import se.lth.cs.docforia.Document;
 import se.lth.cs.docforia.graph.text.Sentence;
 import se.lth.cs.docforia.graph.text.Token;
 import se.lth.cs.nlp.langforia.kernel.structure.TextSegmenter;
+import se.lth.cs.nlp.langforia.kernel.structure.Layers;
 
 import java.util.List;
 import java.util.Properties;
 
+@Layers(writes = {Token.class, Sentence.class})
 public class StanfordCoreNlpSegmenter implements TextSegmenter {
 
-    private static StanfordCoreNLP pipeline;
+    private StanfordCoreNLP pipeline;
 
-    private static synchronized StanfordCoreNLP getPipeline() {
+    private synchronized StanfordCoreNLP getPipeline() {
         if(pipeline != null)
             return pipeline;
         else
@@ -46,7 +48,7 @@ public class StanfordCoreNlpSegmenter implements TextSegmenter {
         }
     }
 
-    private static final ThreadLocal<StanfordCoreNLP> pool = new ThreadLocal<StanfordCoreNLP>() {
+    private final ThreadLocal<StanfordCoreNLP> pool = new ThreadLocal<StanfordCoreNLP>() {
         @Override
         protected StanfordCoreNLP initialValue() {
             return getPipeline();